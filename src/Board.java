@@ -1,6 +1,7 @@
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A Board represents the current state of the game. Boards know their dimension,
@@ -10,35 +11,170 @@ import java.util.List;
  */
 
 public class Board {
-    private Map<Coord, Tile> inside, outside;
-
-    //use boarder to track tiles that has at least one neighbor in ourside.
-    // boarder is a subset of inside, its size <= inside.size()
-    private Map<Coord, Tile> border;
+    private CoordMap<Tile> inside, outside;
     private int size;
 
+    // every tile of the board in row-major order, kept so that reset() can reuse them
+    private Tile[] tiles;
+    private long seed;
+
+    // number of outside tiles of each color, indexed by WaterColor.ordinal()
+    private int[] outsideCounts = new int[WaterColor.values().length];
+
+    // The perimeter index: the outside tiles with at least one neighbor inside (the
+    // frontier), bucketed by color. perimeter[c] holds the tile indices of bucket c
+    // in its first perimeterSizes[c] slots, and perimeterPos[i] is the slot of tile i
+    // in its bucket, or -1 if tile i is not on the perimeter.
+    private int[][] perimeter = new int[WaterColor.values().length][16];
+    private int[] perimeterSizes = new int[WaterColor.values().length];
+    private int[] perimeterPos;
+
+    // scratch marks for flood1() and perimeterSuggest(), see nextStamp()
+    private int[] marks;
+    private int markStamp;
+
+    // the span seeds of flood2(), as tile indices; grown as needed and kept
+    private int[] spanSeeds = new int[64];
+
+    // The lower bound on the moves left, see getLowerBound(). The dealt colors split
+    // the board into components, and since neighboring components differ in color,
+    // a move absorbs whole components, and only ones next to the flooded region.
+    // components[i] is the component of tile i, and the neighbors of component k
+    // are componentNeighbors[neighborStart[k]] up to neighborStart[k + 1]: a graph
+    // fixed for the game. distances[k] is the length of a shortest path from the
+    // flooded region to component k in that graph (0 once it is absorbed), so at
+    // least the number of moves left until k is absorbed, and levelCounts[d] is the
+    // number of components at distance d. queue first holds the components
+    // absorbed since the bound was last asked for, from which the distances are
+    // brought down. None of this is allocated or computed until the bound is first
+    // asked for after a reset, so games that never ask do not pay for it.
+    private int[] components, neighborStart, componentNeighbors = new int[64], distances, levelCounts, queue;
+    private int queued, depth;
+    private boolean componentsFound;
+
+    // the operations done by all floods of this board so far, see getOpCounts()
+    private final OpCounts ops = new OpCounts();
+
+    // Zobrist-style hash of the tiles: every outside tile contributes its index and
+    // color, every inside tile its index and a flooded mark (see cellHash)
+    private long tileHash;
+
+    // how suggest() picks moves, and the suggestions shared by all boards
+    private SuggestStrategy strategy = Strategies.SOBER;
+    private static SuggestCache suggestions = new SuggestCache(Constants.SUGGEST_CACHE_SIZE);
+
+    // scores move sequences from this board, and the state it was last reset to
+    private SequenceEvaluator evaluator;
+    private long evaluatorState;
+
+    // told about every move, with a change reused for every move; recording is true
+    // while a move is being described in change
+    private List<BoardListener> listeners = new ArrayList<>();
+    private BoardChange change = new BoardChange(this);
+    private boolean recording, resetting;
+
+    // what readers on other threads see: the colors dealt at the last reset (reused
+    // by the next reset unless a snapshot shares them), the flooded region as a
+    // persistent bitset, and the latest snapshot of those, published after every
+    // move once some reader has asked for one. Until then moves and resets hold
+    // unpublished, so the first snapshot() can build one between moves.
+    private byte[] dealt;
+    private boolean dealtShared;
+    private PersistentBitSet.Builder floodedBits;
+    private long version;
+    private volatile boolean snapshotsWanted;
+    private volatile BoardSnapshot snapshot;
+    private final ReentrantLock unpublished = new ReentrantLock();
+
+    // source of seeds for boards that are not given one explicitly
+    private static Random seeds = new Random();
+
     /**
      * Constructs a square game board of the given size, initializes the list of
      * inside tiles to include just the tile in the upper left corner, and puts
      * all the other tiles in the outside list.
      */
     public Board(int size) {
+        this(size, seeds.nextLong());
+    }
+
+    /**
+     * Constructs a square game board of the given size whose colors are drawn from
+     * a generator seeded with the given seed, so equal seeds give equal boards.
+     */
+    public Board(int size, long seed) {
         // A tile is either inside or outside the current flooded region.
-        inside = new HashMap<>();
-        outside = new HashMap<>();
-        border = new HashMap<>();
+        inside = new CoordMap<>(size * size);
+        outside = new CoordMap<>(size * size);
         this.size = size;
+        tiles = new Tile[size * size];
+        perimeterPos = new int[size * size];
+        marks = new int[size * size];
+        floodedBits = new PersistentBitSet(size * size).toBuilder();
         for (int y = 0; y < size; y++)
             for (int x = 0; x < size; x++) {
                 Coord coord = new Coord(x, y);
-                outside.put(coord, new Tile(coord));
+                Tile tile = new Tile(coord);
+                tiles[y * size + x] = tile;
+                outside.put(coord, tile);
             }
+        reset(seed);
+    }
+
+    /**
+     * Re-randomizes this board from the given seed and floods the upper left corner
+     * again, as if it had just been constructed. All coords, tiles and maps are
+     * reused, and so are the dealt colors unless a snapshot still shares them, so
+     * a long run of games on one board nobody takes snapshots of allocates next to
+     * nothing.
+     * @param long seed
+     */
+    public void reset(long seed)
+    {
+        lockUnlessPublishing();
+        this.seed = seed;
+        Random gen = new Random(seed);
+
+        // Move everything back to outside; clear() keeps the maps' tables allocated.
+        outside.putAll(inside);
+        inside.clear();
+        Arrays.fill(outsideCounts, 0);
+        Arrays.fill(perimeterSizes, 0);
+        Arrays.fill(perimeterPos, -1);
+        tileHash = 0;
+        if (dealt == null || dealtShared)
+        {
+            dealt = new byte[tiles.length];
+            dealtShared = false;
+        }
+        floodedBits.clear();
+        for (int i = 0; i < tiles.length; i++)
+        {
+            tiles[i].setColor(WaterColor.pickOne(gen));
+            dealt[i] = (byte) tiles[i].getColor().ordinal();
+            outsideCounts[tiles[i].getColor().ordinal()]++;
+            tileHash ^= cellHash(i, tiles[i].getColor().ordinal());
+        }
+        componentsFound = false;
+
         // Move the corner tile into the flooded region and run flood on its color.
-        Tile corner = outside.remove(Coord.ORIGIN);
-        inside.put(Coord.ORIGIN, corner);
-        border.put(Coord.ORIGIN, corner);
+        resetting = true;
+        absorb(Coord.ORIGIN);
+        flood(inside.get(Coord.ORIGIN).getColor());
+        resetting = false;
+        unlockIfHeld();
+        if (!listeners.isEmpty())
+        {
+            change.clear(null);
+            publish();
+        }
+    }
 
-        flood(corner.getColor());
+    /**
+     * Returns the seed this board was last (re)built from.
+     */
+    public long getSeed() {
+        return seed;
     }
 
     /**
@@ -50,6 +186,59 @@ public class Board {
         return inside.get(coord);
     }
 
+    /**
+     * Returns true iff the tile at the specified coordinate is inside the flooded region.
+     */
+    public boolean isFlooded(Coord coord) {
+        return inside.containsKey(coord);
+    }
+
+    /**
+     * Returns a compact copy of the current state of this board, e.g. for cheap
+     * lookahead or for comparing flood functions.
+     */
+    public PackedBoard pack() {
+        return new PackedBoard(this);
+    }
+
+    /**
+     * Returns the number of tiles flooded after playing the given sequence of moves
+     * on this board, which is left unchanged.
+     */
+    public int evaluate(WaterColor[] sequence)
+    {
+        return evaluator().evaluate(sequence);
+    }
+
+    /**
+     * Returns the number of tiles flooded after playing each of the given sequences
+     * of moves on this board, which is left unchanged. Common prefixes of the
+     * sequences are played only once.
+     */
+    public int[] evaluate(WaterColor[][] sequences)
+    {
+        return evaluator().evaluate(sequences);
+    }
+
+    /**
+     * Returns the evaluator for the current state, repacking this board only if it
+     * changed since the last evaluation.
+     */
+    private SequenceEvaluator evaluator()
+    {
+        long state = stateHash();
+        if (evaluator == null || evaluator.getSize() != size)
+        {
+            evaluator = new SequenceEvaluator(pack());
+        }
+        else if (state != evaluatorState)
+        {
+            evaluator.reset(pack());
+        }
+        evaluatorState = state;
+        return evaluator;
+    }
+
     /**
      * Returns the size of this board.
      */
@@ -70,79 +259,473 @@ public class Board {
 
 
     /**
-     * Iterate over a clone of inside. This is because we are going to update inside region on the fly.
+     * Returns the number of tiles of the given color outside the flooded region.
+     * Takes constant time.
+     */
+    public int countOutside(WaterColor color)
+    {
+        return outsideCounts[color.ordinal()];
+    }
+
+    /**
+     * Returns the number of distinct colors among the tiles outside the flooded region.
+     */
+    public int countOutsideColors()
+    {
+        int ans = 0;
+        for (int count : outsideCounts)
+        {
+            if (count > 0)
+            {
+                ans++;
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * Returns a lower bound on the moves left to flood this board: the larger of
+     * the number of distinct colors outside the flooded region and the most moves
+     * any outside component is away from it. Takes time in the number of tiles on
+     * the first call after a reset, and after that, amortized constant time plus
+     * time in the number of components the moves since the last call brought
+     * closer.
+     */
+    public int getLowerBound()
+    {
+        if (!componentsFound)
+        {
+            if (components == null)
+            {
+                components = new int[tiles.length];
+                neighborStart = new int[tiles.length + 1];
+                distances = new int[tiles.length];
+                levelCounts = new int[tiles.length + 1];
+                queue = new int[tiles.length];
+            }
+            findComponents();
+            componentsFound = true;
+            for (Tile tile : inside.values())
+            {
+                reach(components[indexOf(tile.getCoord())]);
+            }
+        }
+        updateDistances();
+        return Math.max(depth, countOutsideColors());
+    }
+
+    /**
+     * Returns the number of frontier tiles (outside tiles next to the flooded region)
+     * of the given color, i.e. how many tiles selecting this color absorbs directly.
+     * Takes constant time.
+     */
+    public int countFrontier(WaterColor color)
+    {
+        return perimeterSizes[color.ordinal()];
+    }
+
+    /**
+     * Returns true iff some tile of the given color touches the flooded region.
+     */
+    public boolean touches(WaterColor color)
+    {
+        return perimeterSizes[color.ordinal()] > 0;
+    }
+
+    /**
+     * Recolors every inside tile with the new color, then drains the perimeter bucket
+     * of that color: each tile taken from the bucket is absorbed, and absorbing a tile
+     * puts its outside neighbors on the perimeter, so neighbors of the new color land
+     * in the very bucket being drained. When the bucket is empty, no outside tile of
+     * the new color touches the flooded region any more.
      *
-     * While iterating, first set each inside tile's color to new color;
-     * then, for all possible neighbors of current tile, test if they are in outside and if their color is the same of new color;
-     * if both true, remove the neighbor from outside to inside.
-     * at last, do the recursion
+     * Apart from the recoloring, this only touches the absorbed tiles and their neighbors.
      * @param color
      */
     public void flood(WaterColor color)
     {
+        beginChange(color);
+        for (Tile tile : inside.values())
+        {
+            ops.visits++;
+            if (recording && tile.getColor() != color)
+            {
+                change.addRecolored(indexOf(tile.getCoord()));
+            }
+            tile.setColor(color);
+        }
 
-//        this.get(Coord.ORIGIN).setColor(color);
-////
-//        expandInside(this.get(Coord.ORIGIN), color);
+        int c = color.ordinal();
+        while (perimeterSizes[c] > 0)
+        {
+            int index = perimeter[c][perimeterSizes[c] - 1];
+            absorb(tiles[index].getCoord());
+        }
+        endChange();
+    }
 
-//
+    /**
+     * Returns an immutable snapshot of this board as of the last completed move or
+     * reset. Takes constant time, and may be called from any thread while the board
+     * is being played.
+     *
+     * Moves only publish snapshots once some reader has asked for one: the first
+     * call waits for the move in progress, if any, to complete and builds one.
+     */
+    public BoardSnapshot snapshot()
+    {
+        if (!snapshotsWanted)
+        {
+            unpublished.lock();
+            try
+            {
+                if (!snapshotsWanted)
+                {
+                    publishSnapshot();
+                    snapshotsWanted = true;
+                }
+            }
+            finally
+            {
+                unpublished.unlock();
+            }
+        }
+        return snapshot;
+    }
 
+    /**
+     * Returns the operations done by all floods of this board so far, resets
+     * included. Callers may clear them to count a stretch of play on its own.
+     */
+    public OpCounts getOpCounts()
+    {
+        return ops;
+    }
 
+    /**
+     * Registers a listener to be told about every later move and reset.
+     */
+    public void addListener(BoardListener listener)
+    {
+        listeners.add(listener);
+    }
 
-        //add edge element in inside to border
-        maintainBorder(color);
+    /**
+     * Unregisters the given listener.
+     */
+    public void removeListener(BoardListener listener)
+    {
+        listeners.remove(listener);
+    }
 
-        //prepare for iterate over the inside
-        //use a deep copy of inside for the iteration, so that original inside can be change on the fly.
-        Map<Coord, Tile> insideClone = new HashMap<>();
-        insideClone.putAll(inside);
+    /**
+     * Starts recording the changes made by a move to the given color, if anyone
+     * listens and the move is not part of a reset.
+     */
+    private void beginChange(WaterColor color)
+    {
+        lockUnlessPublishing();
+        recording = !resetting && !listeners.isEmpty();
+        if (recording)
+        {
+            change.clear(color);
+        }
+    }
 
-        Iterator kIt = insideClone.keySet().iterator();
-        Tile tile;
+    /**
+     * Publishes a snapshot of the new state if anyone asked for snapshots, then stops
+     * recording and tells the listeners about the recorded changes.
+     */
+    private void endChange()
+    {
+        version++;
+        if (snapshotsWanted)
+        {
+            publishSnapshot();
+        }
+        unlockIfHeld();
+        if (recording)
+        {
+            recording = false;
+            publish();
+        }
+    }
 
-        while (kIt.hasNext())
+    /**
+     * Holds unpublished while a move or reset changes this board, unless snapshots
+     * are published after every move anyway. No reader can ask for its first
+     * snapshot meanwhile, so snapshotsWanted does not change until the matching
+     * unlockIfHeld().
+     */
+    private void lockUnlessPublishing()
+    {
+        if (!snapshotsWanted)
         {
-            tile = insideClone.get(kIt.next());
-            tile.setColor(color);
+            unpublished.lock();
+        }
+    }
+
+    private void unlockIfHeld()
+    {
+        if (unpublished.isHeldByCurrentThread())
+        {
+            unpublished.unlock();
+        }
+    }
 
-            for(Coord neighborCoord : tile.getCoord().neighbors(this.getSize()))
+    /**
+     * Publishes a snapshot of the current state, which shares the dealt colors.
+     */
+    private void publishSnapshot()
+    {
+        dealtShared = true;
+        snapshot = new BoardSnapshot(size, version, dealt, floodedBits.build(), get(Coord.ORIGIN).getColor());
+    }
+
+    /**
+     * Labels the components of the dealt colors and finds their neighbors, in time
+     * linear in the number of tiles, and puts every component out of reach.
+     * Follows the colors dealt at the last reset.
+     */
+    private void findComponents()
+    {
+        // Label by breadth-first search, which leaves the tiles of each component
+        // next to each other in queue.
+        int area = tiles.length;
+        Arrays.fill(components, -1);
+        int count = 0, tail = 0;
+        for (int start = 0; start < area; start++)
+        {
+            if (components[start] >= 0)
+            {
+                continue;
+            }
+            components[start] = count;
+            queue[tail++] = start;
+            for (int head = tail - 1; head < tail; head++)
             {
-                if(outside.containsKey(neighborCoord))
+                int i = queue[head];
+                for (int k = 0; k < 4; k++)
                 {
-                    if(this.get(neighborCoord).getColor() == color)
+                    int j = neighborIndex(i, k);
+                    if (j >= 0 && components[j] < 0 && dealt[j] == dealt[i])
                     {
-                        inside.put(neighborCoord, outside.remove(neighborCoord));
-                        flood(color);
+                        components[j] = count;
+                        queue[tail++] = j;
                     }
                 }
             }
+            count++;
         }
 
+        // Collect the distinct neighbors of each component, using distances to
+        // remember the last component that listed each one.
+        Arrays.fill(distances, 0, count, -1);
+        int edges = 0;
+        for (int p = 0; p < area; p++)
+        {
+            int i = queue[p];
+            int component = components[i];
+            if (p == 0 || components[queue[p - 1]] != component)
+            {
+                neighborStart[component] = edges;
+            }
+            for (int k = 0; k < 4; k++)
+            {
+                int j = neighborIndex(i, k);
+                if (j < 0 || components[j] == component || distances[components[j]] == component)
+                {
+                    continue;
+                }
+                distances[components[j]] = component;
+                if (edges == componentNeighbors.length)
+                {
+                    componentNeighbors = Arrays.copyOf(componentNeighbors, 2 * edges);
+                }
+                componentNeighbors[edges++] = components[j];
+            }
+        }
+        neighborStart[count] = edges;
+
+        // Every distance is less than the number of components, so count stands in
+        // for out of reach until the corner is absorbed.
+        Arrays.fill(distances, 0, count, count);
+        Arrays.fill(levelCounts, 0, count + 1, 0);
+        levelCounts[count] = count;
+        depth = count;
+        queued = 0;
+    }
+
+    /**
+     * Returns the index of the neighbor of tile i above it, to its right, below it
+     * or to its left for k = 0 to 3, or -1 if there is none.
+     */
+    private int neighborIndex(int i, int k)
+    {
+        int x = i % size;
+        if (k == 0) return i >= size ? i - size : -1;
+        if (k == 1) return x < size - 1 ? i + 1 : -1;
+        if (k == 2) return i + size < tiles.length ? i + size : -1;
+        return x > 0 ? i - 1 : -1;
     }
 
-    private void maintainBorder(WaterColor color)
+    /**
+     * Marks the given component absorbed, if it was not already.
+     */
+    private void reach(int component)
     {
-        boolean allNeighborInside;
-        for(Coord c: inside.keySet())
+        if (distances[component] > 0)
         {
-            allNeighborInside = true;
-            for(Coord neighborC : c.neighbors(this.getSize()))
+            levelCounts[distances[component]]--;
+            levelCounts[0]++;
+            distances[component] = 0;
+            queue[queued++] = component;
+        }
+    }
+
+    /**
+     * Brings the distances down from the components absorbed since the last call,
+     * by a breadth-first search that only goes on through components it brings
+     * closer, and the depth with them.
+     */
+    private void updateDistances()
+    {
+        int tail = queued;
+        for (int head = 0; head < tail; head++)
+        {
+            int component = queue[head];
+            int d = distances[component] + 1;
+            for (int e = neighborStart[component]; e < neighborStart[component + 1]; e++)
             {
-                if(outside.containsKey(neighborC) && this.get(neighborC).getColor() != color)
+                int neighbor = componentNeighbors[e];
+                if (distances[neighbor] > d)
                 {
-                    border.put(c, this.get(c));
-                    allNeighborInside = false;
+                    levelCounts[distances[neighbor]]--;
+                    levelCounts[d]++;
+                    distances[neighbor] = d;
+                    queue[tail++] = neighbor;
                 }
             }
-            if(allNeighborInside)
+        }
+        queued = 0;
+        while (depth > 0 && levelCounts[depth] == 0)
+        {
+            depth--;
+        }
+    }
+
+    private void publish()
+    {
+        for (int i = 0; i < listeners.size(); i++)
+        {
+            listeners.get(i).boardChanged(change);
+        }
+    }
+
+    /**
+     * Moves the tile at the given coordinate from outside to inside, and keeps the
+     * per-color outside counts and the perimeter index up to date: the tile leaves
+     * both, and its outside neighbors join the perimeter.
+     * @param Coord coord
+     */
+    private void absorb(Coord coord)
+    {
+        Tile tile = outside.remove(coord);
+        inside.put(coord, tile);
+        ops.mapOps += 2;
+        ops.visits++;
+
+        int color = tile.getColor().ordinal();
+        outsideCounts[color]--;
+        int index = indexOf(coord);
+        if (componentsFound)
+        {
+            reach(components[index]);
+        }
+        floodedBits.set(index);
+        if (recording)
+        {
+            change.addAbsorbed(index);
+        }
+        tileHash ^= cellHash(index, color) ^ cellHash(index, FLOODED_MARK);
+        if (perimeterPos[index] >= 0)
+        {
+            // Move the last tile of the bucket into the vacated slot.
+            int last = perimeter[color][--perimeterSizes[color]];
+            perimeter[color][perimeterPos[index]] = last;
+            perimeterPos[last] = perimeterPos[index];
+            perimeterPos[index] = -1;
+        }
+
+        for (Coord neighborCoord : coord.neighbors(this.getSize()))
+        {
+            int neighbor = indexOf(neighborCoord);
+            ops.visits++;
+            if (perimeterPos[neighbor] >= 0)
             {
-                border.remove(c,this.get(c));
+                continue;
+            }
+            ops.mapOps++;
+            if (outside.containsKey(neighborCoord))
+            {
+                int bucket = tiles[neighbor].getColor().ordinal();
+                if (perimeterSizes[bucket] == perimeter[bucket].length)
+                {
+                    perimeter[bucket] = Arrays.copyOf(perimeter[bucket], 2 * perimeterSizes[bucket]);
+                }
+                perimeterPos[neighbor] = perimeterSizes[bucket];
+                perimeter[bucket][perimeterSizes[bucket]++] = neighbor;
+                ops.pushes++;
             }
         }
+    }
+
+    // stands in for the color in cellHash() once a tile is inside
+    private static final int FLOODED_MARK = 7;
+
+    /**
+     * Returns a well-mixed 64-bit value for the tile at the given index carrying
+     * the given color ordinal (or FLOODED_MARK), using the splitmix64 finalizer.
+     */
+    private static long cellHash(int index, int color)
+    {
+        long z = (index * 8L + color) * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns a 64-bit hash of what this board looks like: the colors of the outside
+     * tiles, which tiles are inside, and the color of the flooded region. Boards of
+     * the same size that look alike hash alike, however they got there. Takes
+     * constant time.
+     */
+    public long stateHash()
+    {
+        return tileHash ^ cellHash(-1, get(Coord.ORIGIN).getColor().ordinal());
+    }
 
-//        System.out.println("inside size: " + inside.size());
-//        System.out.println("border size: " + border.size());
+    /**
+     * Returns a fresh stamp for marks: tiles whose mark equals it count as marked,
+     * so all marks are cleared at once by taking a new stamp.
+     */
+    private int nextStamp()
+    {
+        if (++markStamp == 0)
+        {
+            Arrays.fill(marks, 0);
+            markStamp = 1;
+        }
+        return markStamp;
+    }
 
+    /**
+     * Returns the row-major index of the given coordinate.
+     */
+    private int indexOf(Coord coord)
+    {
+        return coord.getY() * size + coord.getX();
     }
 
 //    private void expandInside(Tile currentTitle, WaterColor selectedColor)
@@ -180,26 +763,34 @@ public class Board {
      * Last, we push such a neighbor into the queue,
      *          so that it can be set color and its neighbors can be checked
      *          if they have same color and are contained by outside
+     * Tiles are marked when they are pushed, so that every tile is queued at most once
+     * (inside tiles used to be pushed again by each of their neighbors, which blew up
+     * on large regions and never ended when the region's own color was selected).
      * @param WaterColor color
      */
      public void flood1(WaterColor color)
      {
-         //add edge element in inside to border
-         maintainBorder(color);
-
-
+         beginChange(color);
          Queue<Coord> q = new LinkedList<>();
+         int stamp = nextStamp();
+         marks[indexOf(Coord.ORIGIN)] = stamp;
          q.offer(Coord.ORIGIN);
+         ops.pushes++;
 
          Tile tmpTile;
-         WaterColor tmpColor = inside.get(Coord.ORIGIN).getColor();
 
          // when the queue is empty, there is no outside tile of same color as (0, 0)
          while(!q.isEmpty())
          {
 
              tmpTile = inside.get(q.poll());
+             ops.visits++;
+             ops.mapOps++;
 
+             if (recording && tmpTile.getColor() != color)
+             {
+                 change.addRecolored(indexOf(tmpTile.getCoord()));
+             }
              tmpTile.setColor(color);
 
              // loop through current tile's neighbors
@@ -207,85 +798,246 @@ public class Board {
              {
 
                  //if a neighbor is in outside and has the same color as inside
+                 ops.mapOps++;
                  if(outside.containsKey(neighborCoord))
                  {
 
+                     ops.mapOps++;
                      if(outside.get(neighborCoord).getColor() == color)
                      {
 
                          // then move this neighbor from outside to inside
-                         inside.put(neighborCoord, outside.remove(neighborCoord));
+                         absorb(neighborCoord);
                          // and push the neighbor into the queue to set its color in next round of while loop.
+                         marks[indexOf(neighborCoord)] = stamp;
                          q.offer(neighborCoord);
+                         ops.pushes++;
                      }
                  }
-                 // if the neighbor has the same color as (0, 0), only send it to the queue, no region move
-                 else if(this.get(neighborCoord).getColor() == tmpColor)
+                 // if the neighbor is inside and not queued yet, only send it to the queue, no region move
+                 else if(marks[indexOf(neighborCoord)] != stamp)
                  {
+                     marks[indexOf(neighborCoord)] = stamp;
                      q.offer(neighborCoord);
+                     ops.pushes++;
                  }
              }
 
          }
+         endChange();
+     }
 
+    /**
+     * Scanline span fill. A tile needs filling if it is inside but not yet recolored,
+     * or outside and of the new color; filling recolors or absorbs it, after which it
+     * never needs filling again. From each seed the fill extends a span left and
+     * right over tiles needing filling, fills the whole span, and pushes one seed per
+     * run of tiles needing filling in the rows above and below it. Only span seeds go
+     * on the stack, and every row is walked in order.
+     *
+     * Selecting the region's own color fills nothing, since the corner itself does
+     * not need filling then.
+     * @param WaterColor color
+     */
+    public void flood2(WaterColor color)
+    {
+        beginChange(color);
+        int top = 0;
+        spanSeeds[top++] = 0;
+        ops.pushes++;
+        while (top > 0)
+        {
+            int seed = spanSeeds[--top];
+            if (!needsFill(seed, color))
+            {
+                continue;
+            }
+            int row = seed - seed % size;
+            int left = seed, right = seed;
+            while (left > row && needsFill(left - 1, color))
+            {
+                left--;
+            }
+            while (right < row + size - 1 && needsFill(right + 1, color))
+            {
+                right++;
+            }
+            for (int i = left; i <= right; i++)
+            {
+                fill(i, color);
+            }
 
+            for (int next = row - size; next <= row + size; next += 2 * size)
+            {
+                if (next < 0 || next >= tiles.length)
+                {
+                    continue;
+                }
+                boolean inRun = false;
+                for (int i = next + left - row; i <= next + right - row; i++)
+                {
+                    boolean needed = needsFill(i, color);
+                    if (needed && !inRun)
+                    {
+                        if (top == spanSeeds.length)
+                        {
+                            spanSeeds = Arrays.copyOf(spanSeeds, 2 * top);
+                        }
+                        spanSeeds[top++] = i;
+                        ops.pushes++;
+                    }
+                    inRun = needed;
+                }
+            }
+        }
+        endChange();
+    }
 
+    /**
+     * Returns true iff flood2 still has to fill the tile at the given index.
+     */
+    private boolean needsFill(int index, WaterColor color)
+    {
+        Tile tile = tiles[index];
+        ops.visits++;
+        if (perimeterPos[index] < 0)
+        {
+            ops.mapOps++;
+        }
+        boolean isOutside = perimeterPos[index] >= 0 || outside.containsKey(tile.getCoord());
+        return isOutside ? tile.getColor() == color : tile.getColor() != color;
+    }
 
-     }
-
-//
-//     public void flood2(WaterColor color) {
-//
-//     }
+    /**
+     * Absorbs the outside tile at the given index, or recolors the inside one.
+     */
+    private void fill(int index, WaterColor color)
+    {
+        Tile tile = tiles[index];
+        ops.mapOps++;
+        if (outside.containsKey(tile.getCoord()))
+        {
+            absorb(tile.getCoord());
+            return;
+        }
+        if (recording)
+        {
+            change.addRecolored(index);
+        }
+        tile.setColor(color);
+    }
 
 
     /**
-     * TODO
-     *
      * Returns the "best" GameColor for the next move.
      *
-     * Modify this comment to describe your algorithm. Possible strategies to pursue
-     * include maximizing the number of tiles in the current flooded region, or maximizing
-     * the size of the perimeter of the current flooded region.
+     * Possible strategies include maximizing the number of tiles in the current flooded
+     * region (soberSuggest) or maximizing the size of the perimeter of the current
+     * flooded region (perimeterSuggest).
+     *
+     * Asks this board's strategy (soberSuggest by default), through the suggestion
+     * cache shared by all boards, so repeated hints on the same position are free.
      */
     public WaterColor suggest()
     {
-        return soberSuggest();
+        return suggest(strategy);
     }
 
     /**
-     * Iterate over border to retrieve all border elements' neighbors that are in outside;
-     * Then use a simple vote algorithm to decide which color might has the highest score.
-     *
+     * Returns the move suggested by the given strategy, looked up in the suggestion
+     * cache shared by all boards first if the strategy is cacheable.
+     */
+    public WaterColor suggest(SuggestStrategy strategy)
+    {
+        return strategy.isCacheable() ? suggestions.get(this, strategy) : strategy.suggest(this);
+    }
+
+    /**
+     * Sets the strategy used by suggest().
+     */
+    public void setStrategy(SuggestStrategy strategy)
+    {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Returns the suggestion cache shared by all boards, e.g. for its statistics.
+     */
+    public static SuggestCache getSuggestions()
+    {
+        return suggestions;
+    }
+
+    /**
+     * Votes for the color most common on the perimeter of the flooded region, i.e.
+     * the move that absorbs the most tiles directly. The votes are simply the sizes
+     * of the perimeter buckets.
      *
      * @return WaterColor
      */
-    private WaterColor soberSuggest()
+    WaterColor soberSuggest()
     {
-        Iterator bIt = border.keySet().iterator();
-        WaterColor result = WaterColor.pickOne();
-        WaterColor tmp;
-
+        WaterColor result = get(Coord.ORIGIN).getColor();
         int cnt = 0;
 
+        for (WaterColor color : WaterColor.values())
+        {
+            if (perimeterSizes[color.ordinal()] > cnt)
+            {
+                result = color;
+                cnt = perimeterSizes[color.ordinal()];
+            }
+        }
+
+        return result;
+    }
 
-        while (bIt.hasNext())
+    /**
+     * Suggests the color that grows the perimeter of the flooded region the most.
+     * Selecting color c absorbs bucket c and puts those tiles' outside neighbors that
+     * are not on the perimeter yet onto it; each color is scored by the tiles it
+     * absorbs plus the tiles it newly exposes. Neighbors of color c itself (which the
+     * move absorbs further) are left out, so this is a one-step estimate that only
+     * looks at the tiles of each bucket and their neighbors. Ties go to the color
+     * absorbing more tiles.
+     *
+     * Maximizing the perimeter alone plays badly (it favors long thin snakes), hence
+     * the absorbed tiles in the score.
+     *
+     * @return WaterColor
+     */
+    WaterColor perimeterSuggest()
+    {
+        WaterColor result = get(Coord.ORIGIN).getColor();
+        int bestScore = -1;
+
+        for (WaterColor color : WaterColor.values())
         {
-            // This could be further improved by using a helper to get a list/array of neighbors' colors
-            List<Coord> neighbors = border.get(bIt.next()).getCoord().neighbors(this.getSize());
-            tmp = this.get(neighbors.get(0)).getColor();
-            if(cnt == 0)
+            int c = color.ordinal();
+            if (perimeterSizes[c] == 0)
             {
-                result = tmp;
-                cnt = 1;
+                continue;
             }
-            else if(result == tmp)
+            int stamp = nextStamp();
+            int gained = 0;
+            for (int k = 0; k < perimeterSizes[c]; k++)
             {
-                cnt --;
+                for (Coord neighborCoord : tiles[perimeter[c][k]].getCoord().neighbors(this.getSize()))
+                {
+                    int neighbor = indexOf(neighborCoord);
+                    if (perimeterPos[neighbor] < 0 && marks[neighbor] != stamp
+                            && tiles[neighbor].getColor() != color && outside.containsKey(neighborCoord))
+                    {
+                        marks[neighbor] = stamp;
+                        gained++;
+                    }
+                }
             }
-            else
+            int score = perimeterSizes[c] + gained;
+            if (score > bestScore || (score == bestScore && perimeterSizes[c] > perimeterSizes[result.ordinal()]))
             {
-                cnt ++;
+                bestScore = score;
+                result = color;
             }
         }
 
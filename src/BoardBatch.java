@@ -0,0 +1,444 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A BoardBatch holds many games on boards of the same size and plays them in
+ * lockstep, one move per game per step, for autoplay sweeps over thousands of
+ * small boards.
+ *
+ * The cells are stored struct-of-arrays and bit-sliced: for every cell there is
+ * one bit per game saying whether the cell is flooded, and a few more spelling out
+ * the bits of its color ordinal, each kind of bit in its own plane. A plane holds
+ * the bits of a cell for all games next to each other, 64 games to a long, so
+ * plane[i * words + w] covers cell i of games 64w to 64w + 63. Recoloring,
+ * absorbing and checking for the end of the games are then straight-line loops
+ * of and, or and xor over longs, each operation working on 64 games at once (and
+ * on several longs at once where the JIT vectorizes the loop). No pass depends on
+ * the shape of any one region; a step costs the same for every game.
+ *
+ * A move recolors the flooded cells, then absorbs cells of the new color next to
+ * flooded cells in sweeps alternately top-down (looking left and up) and
+ * bottom-up (looking right and down), until a sweep absorbs nothing. Regions that
+ * wind against the sweeps take more of them, but on random boards a few do.
+ */
+
+public class BoardBatch {
+    private static final WaterColor[] COLORS = WaterColor.values();
+    private static final int PLANES = 32 - Integer.numberOfLeadingZeros(COLORS.length - 1);
+
+    private final int size, games, words;
+    // area + 1 cells of words longs each; the last cell stands in for missing neighbors
+    private final long[] flooded;
+    private final long[][] colors;   // colors[p]: bit p of the color ordinals
+    private final long[][] step;     // step[p][w]: bit p of the moves of the current step
+    private final long[] done;       // games fully flooded, and the padding past the last game
+    private final int[] moves;       // moves played by each game until it was fully flooded
+    private final int[] frontier;    // frontier[c * games + g]: frontier cells of color c in game g
+
+    /**
+     * Constructs a batch of one game per seed, with the same colors as new
+     * Board(size, seed), and floods the upper left corner of each.
+     */
+    public BoardBatch(int size, long[] seeds)
+    {
+        this.size = size;
+        games = seeds.length;
+        words = (games + 63) / 64;
+        int area = size * size;
+        flooded = new long[(area + 1) * words];
+        colors = new long[PLANES][(area + 1) * words];
+        step = new long[PLANES][words];
+        done = new long[words];
+        moves = new int[games];
+        frontier = new int[COLORS.length * games];
+
+        for (int g = 0; g < games; g++)
+        {
+            Random gen = new Random(seeds[g]);
+            for (int i = 0; i < area; i++)
+            {
+                setColor(i, g, WaterColor.pickOne(gen).ordinal());
+            }
+            flooded[g >>> 6] |= 1L << g;
+        }
+        // The padding past the last game is flooded from the start, so it is done.
+        long padding = games % 64 == 0 ? 0 : -1L << games;
+        for (int i = 0; i < area; i++)
+        {
+            flooded[i * words + words - 1] |= padding;
+        }
+
+        // Flood every corner with its own color, which absorbs without a move.
+        for (int g = 0; g < games; g++)
+        {
+            setStep(g, color(0, g));
+        }
+        absorb();
+    }
+
+    /**
+     * Returns the size of the boards.
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of games.
+     */
+    public int getGames()
+    {
+        return games;
+    }
+
+    /**
+     * Returns the color of the flooded region of the given game.
+     */
+    public WaterColor getRegionColor(int game)
+    {
+        return COLORS[color(0, game)];
+    }
+
+    /**
+     * Returns the number of cells inside the flooded region of the given game. Takes
+     * time linear in the area of the board.
+     */
+    public int getFloodedCount(int game)
+    {
+        int ans = 0;
+        for (int i = 0; i < size * size; i++)
+        {
+            ans += (int) (flooded[i * words + (game >>> 6)] >>> game) & 1;
+        }
+        return ans;
+    }
+
+    /**
+     * Returns true iff the given game is fully flooded.
+     */
+    public boolean fullyFlooded(int game)
+    {
+        return (done[game >>> 6] & (1L << game)) != 0;
+    }
+
+    /**
+     * Returns true iff every game is fully flooded.
+     */
+    public boolean allFlooded()
+    {
+        for (long bits : done)
+        {
+            if (bits != -1L)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of moves the given game has been played for, up to the one
+     * that flooded it fully.
+     */
+    public int getMoves(int game)
+    {
+        return moves[game];
+    }
+
+    /**
+     * Returns a packed copy of the given game.
+     */
+    public PackedBoard toPackedBoard(int game)
+    {
+        byte[] cells = new byte[size * size];
+        for (int i = 0; i < cells.length; i++)
+        {
+            boolean in = (flooded[i * words + (game >>> 6)] & (1L << game)) != 0;
+            cells[i] = (byte) ((in ? PackedBoard.FLOODED : 0) | color(i, game));
+        }
+        return new PackedBoard(size, cells, getFloodedCount(game));
+    }
+
+    /**
+     * Plays one step: colors[g] in every game g that is not fully flooded yet.
+     * Selecting a region's own color changes nothing, as on every board.
+     */
+    public void flood(WaterColor[] colors)
+    {
+        assert colors.length == games;
+        for (int g = 0; g < games; g++)
+        {
+            if (fullyFlooded(g))
+            {
+                setStep(g, color(0, g));
+            }
+            else
+            {
+                setStep(g, colors[g].ordinal());
+                moves[g]++;
+            }
+        }
+        recolor();
+        absorb();
+    }
+
+    /**
+     * Fills into with the move of every game that absorbs the most frontier cells
+     * directly, ties going to the first color and no frontier at all to the region's
+     * own color: the choice of Strategies.SOBER. Takes time linear in the area of
+     * the boards plus the total length of the frontiers.
+     */
+    public void suggest(WaterColor[] into)
+    {
+        assert into.length == games;
+        Arrays.fill(frontier, 0);
+        int area = size * size;
+        int none = area * words;
+        for (int i = 0; i < area; i++)
+        {
+            int base = i * words;
+            int x = i % size;
+            int left = x > 0 ? base - words : none;
+            int right = x < size - 1 ? base + words : none;
+            int up = i >= size ? base - size * words : none;
+            int down = i + size < area ? base + size * words : none;
+            for (int w = 0; w < words; w++)
+            {
+                long near = flooded[left + w] | flooded[right + w] | flooded[up + w] | flooded[down + w];
+                for (long bits = near & ~flooded[base + w]; bits != 0; bits &= bits - 1)
+                {
+                    int g = w * 64 + Long.numberOfTrailingZeros(bits);
+                    frontier[color(i, g) * games + g]++;
+                }
+            }
+        }
+        for (int g = 0; g < games; g++)
+        {
+            int best = color(0, g);
+            int most = 0;
+            for (int c = 0; c < COLORS.length; c++)
+            {
+                if (frontier[c * games + g] > most)
+                {
+                    most = frontier[c * games + g];
+                    best = c;
+                }
+            }
+            into[g] = COLORS[best];
+        }
+    }
+
+    /**
+     * Plays every game to the end with the moves of suggest(), for at most maxSteps
+     * steps, and returns the number of steps played.
+     */
+    public int autoplay(int maxSteps)
+    {
+        WaterColor[] colors = new WaterColor[games];
+        int steps = 0;
+        while (steps < maxSteps && !allFlooded())
+        {
+            suggest(colors);
+            flood(colors);
+            steps++;
+        }
+        return steps;
+    }
+
+    /**
+     * Recolors every flooded cell with its game's move.
+     */
+    private void recolor()
+    {
+        int end = size * size * words;
+        for (int p = 0; p < PLANES; p++)
+        {
+            long[] plane = colors[p];
+            long[] move = step[p];
+            for (int base = 0; base < end; base += words)
+            {
+                for (int w = 0; w < words; w++)
+                {
+                    long in = flooded[base + w];
+                    plane[base + w] = (plane[base + w] & ~in) | (move[w] & in);
+                }
+            }
+        }
+    }
+
+    /**
+     * Absorbs the cells of each game's move next to its flooded region, sweeping
+     * down and up in turn until a sweep after the first absorbs nothing: then no
+     * cell has a flooded neighbor on either side it looked. Then works out which
+     * games are done.
+     */
+    private void absorb()
+    {
+        int area = size * size;
+        int none = area * words;
+        for (int sweep = 0; ; sweep++)
+        {
+            long absorbed = 0;
+            boolean down = sweep % 2 == 0;
+            for (int k = 0; k < area; k++)
+            {
+                int i = down ? k : area - 1 - k;
+                int base = i * words;
+                int x = i % size;
+                int a, b;
+                if (down)
+                {
+                    a = x > 0 ? base - words : none;
+                    b = i >= size ? base - size * words : none;
+                }
+                else
+                {
+                    a = x < size - 1 ? base + words : none;
+                    b = i + size < area ? base + size * words : none;
+                }
+                absorbed |= absorb(base, a, b);
+            }
+            if (absorbed == 0 && sweep > 0)
+            {
+                break;
+            }
+        }
+
+        Arrays.fill(done, -1L);
+        for (int base = 0; base < area * words; base += words)
+        {
+            for (int w = 0; w < words; w++)
+            {
+                done[w] &= flooded[base + w];
+            }
+        }
+    }
+
+    /**
+     * Floods the cells at base whose color is their game's move and that have a
+     * flooded neighbor at a or b, and returns the games where that happened.
+     */
+    private long absorb(int base, int a, int b)
+    {
+        long absorbed = 0;
+        for (int w = 0; w < words; w++)
+        {
+            long same = -1L;
+            for (int p = 0; p < PLANES; p++)
+            {
+                same &= ~(colors[p][base + w] ^ step[p][w]);
+            }
+            long in = flooded[base + w];
+            long grown = in | (same & (flooded[a + w] | flooded[b + w]));
+            flooded[base + w] = grown;
+            absorbed |= grown ^ in;
+        }
+        return absorbed;
+    }
+
+    /**
+     * Returns the color ordinal of cell i in game g.
+     */
+    private int color(int i, int g)
+    {
+        int ans = 0;
+        for (int p = 0; p < PLANES; p++)
+        {
+            ans |= (int) ((colors[p][i * words + (g >>> 6)] >>> g) & 1) << p;
+        }
+        return ans;
+    }
+
+    private void setColor(int i, int g, int c)
+    {
+        for (int p = 0; p < PLANES; p++)
+        {
+            if ((c >>> p & 1) != 0)
+            {
+                colors[p][i * words + (g >>> 6)] |= 1L << g;
+            }
+            else
+            {
+                colors[p][i * words + (g >>> 6)] &= ~(1L << g);
+            }
+        }
+    }
+
+    private void setStep(int g, int c)
+    {
+        for (int p = 0; p < PLANES; p++)
+        {
+            if ((c >>> p & 1) != 0)
+            {
+                step[p][g >>> 6] |= 1L << g;
+            }
+            else
+            {
+                step[p][g >>> 6] &= ~(1L << g);
+            }
+        }
+    }
+
+    /**
+     * Compares autoplaying seeded games of a range of sizes with the moves of
+     * Strategies.SOBER one Board at a time, one PackedBoard at a time and all at once
+     * in a batch, and reports games per second. Arguments: the number of games per
+     * size (4096 by default).
+     */
+    public static void main(String... args)
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        Random gen = new Random(Constants.MAX_DIM);
+        System.out.printf("%6s %14s %14s %14s %8s%n", "size", "Board/s", "PackedBoard/s", "batch/s", "speedup");
+        for (int size = Constants.DEFAULT_SIZE; size <= 2 * Constants.MAX_BOARD_SIZE_FOR_AUTOPLAY; size += 5)
+        {
+            long[] seeds = new long[games];
+            for (int g = 0; g < games; g++)
+            {
+                seeds[g] = gen.nextLong();
+            }
+            double single = 0, packed = 0, batched = 0;
+            int[] counts = new int[COLORS.length];
+            for (int round = 0; round < 5; round++)   // the last round counts, warmed up
+            {
+                long startTime = System.nanoTime();
+                for (long seed : seeds)
+                {
+                    Board board = new Board(size, seed);
+                    while (!board.fullyFlooded())
+                    {
+                        board.flood(Strategies.SOBER.suggest(board));
+                    }
+                }
+                single = games * 1e9 / (System.nanoTime() - startTime);
+
+                startTime = System.nanoTime();
+                for (long seed : seeds)
+                {
+                    PackedBoard board = new PackedBoard(size, seed);
+                    while (!board.fullyFlooded())
+                    {
+                        board.countFrontier(counts);
+                        int best = 0;
+                        for (int c = 1; c < counts.length; c++)
+                        {
+                            if (counts[c] > counts[best])
+                            {
+                                best = c;
+                            }
+                        }
+                        board.floodSequential(COLORS[best]);
+                    }
+                }
+                packed = games * 1e9 / (System.nanoTime() - startTime);
+
+                startTime = System.nanoTime();
+                new BoardBatch(size, seeds).autoplay(Integer.MAX_VALUE);
+                batched = games * 1e9 / (System.nanoTime() - startTime);
+            }
+            System.out.printf("%6d %14.0f %14.0f %14.0f %7.1fx%n", size, single, packed, batched,
+                    batched / Math.max(single, packed));
+        }
+    }
+}
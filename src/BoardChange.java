@@ -0,0 +1,114 @@
+import java.util.Arrays;
+
+/**
+ * A BoardChange describes what one move did to a board: the new color of the
+ * flooded region, the tiles that were inside before the move and got recolored,
+ * and the tiles newly absorbed. Tiles are given by their index in row-major order
+ * (y * size + x).
+ *
+ * A board reuses a single BoardChange for all its moves, backed by growable int
+ * buffers, so a change is only valid during the listener call it is passed to.
+ */
+
+public class BoardChange {
+    private final Board board;
+    private WaterColor color;
+    private boolean reset;
+    private int[] recolored = new int[16];
+    private int recoloredCount;
+    private int[] absorbed = new int[16];
+    private int absorbedCount;
+
+    BoardChange(Board board)
+    {
+        this.board = board;
+    }
+
+    /**
+     * Returns the board that changed.
+     */
+    public Board getBoard()
+    {
+        return board;
+    }
+
+    /**
+     * Returns the color of the flooded region after the move.
+     */
+    public WaterColor getColor()
+    {
+        return color;
+    }
+
+    /**
+     * Returns true iff the whole board was reset rather than flooded, in which case
+     * every tile may have changed and no tiles are listed.
+     */
+    public boolean isReset()
+    {
+        return reset;
+    }
+
+    /**
+     * Returns the number of recolored tiles.
+     */
+    public int getRecoloredCount()
+    {
+        return recoloredCount;
+    }
+
+    /**
+     * Returns the index of the ith recolored tile.
+     */
+    public int getRecolored(int i)
+    {
+        assert i < recoloredCount;
+        return recolored[i];
+    }
+
+    /**
+     * Returns the number of newly absorbed tiles.
+     */
+    public int getAbsorbedCount()
+    {
+        return absorbedCount;
+    }
+
+    /**
+     * Returns the index of the ith newly absorbed tile.
+     */
+    public int getAbsorbed(int i)
+    {
+        assert i < absorbedCount;
+        return absorbed[i];
+    }
+
+    /**
+     * Starts describing a new move (or a reset, if color is null).
+     */
+    void clear(WaterColor color)
+    {
+        this.color = color;
+        reset = color == null;
+        recoloredCount = 0;
+        absorbedCount = 0;
+    }
+
+    void addRecolored(int index)
+    {
+        if (recoloredCount == recolored.length)
+        {
+            recolored = Arrays.copyOf(recolored, 2 * recoloredCount);
+        }
+        recolored[recoloredCount++] = index;
+    }
+
+    void addAbsorbed(int index)
+    {
+        if (absorbedCount == absorbed.length)
+        {
+            absorbed = Arrays.copyOf(absorbed, 2 * absorbedCount);
+        }
+        absorbed[absorbedCount++] = index;
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * A BoardListener is told about every move made on the boards it listens to.
+ */
+
+public interface BoardListener {
+    /**
+     * Called after every move (and after every reset) of a board. The change is
+     * reused by the board and must not be kept beyond this call.
+     */
+    void boardChanged(BoardChange change);
+}
@@ -0,0 +1,45 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * BoardPool hands out reusable boards to batch runners. Every thread keeps at
+ * most one board per size; acquiring a board resets it in place with the given
+ * seed instead of allocating a new one.
+ *
+ * A board handed out by acquire() belongs to the calling thread and is only valid
+ * until that thread acquires a board of the same size again.
+ */
+
+public class BoardPool {
+    private static final ThreadLocal<Map<Integer, Board>> boards = ThreadLocal.withInitial(HashMap::new);
+
+    private BoardPool() {
+    }
+
+    /**
+     * Returns this thread's board of the given size, freshly reset from the seed.
+     */
+    public static Board acquire(int size, long seed)
+    {
+        Map<Integer, Board> mine = boards.get();
+        Board board = mine.get(size);
+        if (board == null)
+        {
+            board = new Board(size, seed);
+            mine.put(size, board);
+        }
+        else
+        {
+            board.reset(seed);
+        }
+        return board;
+    }
+
+    /**
+     * Drops all boards pooled by the calling thread.
+     */
+    public static void clear()
+    {
+        boards.remove();
+    }
+}
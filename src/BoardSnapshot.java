@@ -0,0 +1,99 @@
+/**
+ * A BoardSnapshot is an immutable view of a board as it was after some move, safe to
+ * read from any thread while the board itself goes on being played.
+ *
+ * Outside tiles never change color and inside tiles all have the region's color, so
+ * a snapshot is just the colors the board was dealt (shared by all snapshots since
+ * the board's last reset), the flooded region as a PersistentBitSet (sharing all
+ * but the changed parts with the previous snapshot), and the region's color.
+ */
+
+public class BoardSnapshot {
+    private static final WaterColor[] COLORS = WaterColor.values();
+
+    private final int size;
+    private final long version;
+    private final byte[] dealt;   // never written once shared
+    private final PersistentBitSet flooded;
+    private final WaterColor regionColor;
+
+    BoardSnapshot(int size, long version, byte[] dealt, PersistentBitSet flooded, WaterColor regionColor)
+    {
+        this.size = size;
+        this.version = version;
+        this.dealt = dealt;
+        this.flooded = flooded;
+        this.regionColor = regionColor;
+    }
+
+    /**
+     * Returns the size of the board.
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the version of the board this snapshot shows, which increases with
+     * every move and every reset.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Returns the color of the tile at the given coordinate.
+     */
+    public WaterColor getColor(Coord coord)
+    {
+        int index = coord.getY() * size + coord.getX();
+        return flooded.get(index) ? regionColor : COLORS[dealt[index]];
+    }
+
+    /**
+     * Returns true iff the tile at the given coordinate is inside the flooded region.
+     */
+    public boolean isFlooded(Coord coord)
+    {
+        return flooded.get(coord.getY() * size + coord.getX());
+    }
+
+    /**
+     * Returns the color of the flooded region.
+     */
+    public WaterColor getRegionColor()
+    {
+        return regionColor;
+    }
+
+    /**
+     * Returns the number of tiles inside the flooded region.
+     */
+    public int getFloodedCount()
+    {
+        return flooded.cardinality();
+    }
+
+    /**
+     * Returns true iff every tile is inside the flooded region.
+     */
+    public boolean fullyFlooded()
+    {
+        return flooded.cardinality() == size * size;
+    }
+
+    /**
+     * Returns a packed copy of this snapshot, e.g. for a search in the background.
+     */
+    public PackedBoard pack()
+    {
+        byte[] cells = new byte[size * size];
+        for (int i = 0; i < cells.length; i++)
+        {
+            cells[i] = flooded.get(i) ? (byte) (PackedBoard.FLOODED | regionColor.ordinal()) : dealt[i];
+        }
+        return new PackedBoard(size, cells, flooded.cardinality());
+    }
+}
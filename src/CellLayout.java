@@ -0,0 +1,134 @@
+/**
+ * The order in which a PackedBoard stores its cells.
+ *
+ * ROW_MAJOR is the order of Board's tiles: the rows one after the other. Cells
+ * next to each other vertically are then a whole row apart, which on very large
+ * boards puts nearly every vertical step of a flood on another cache line. TILED
+ * stores 8x8 blocks one after the other, and MORTON follows the Z-order curve, so
+ * that most neighbors of a cell share its block or cache line.
+ *
+ * Every layout maps (x, y) to columnOffsets(size)[x] + rowOffsets(size)[y], a sum
+ * of two precomputed tables of size entries each, which is how rendering, copies
+ * and comparisons reach a cell whatever the layout; fills instead step from a
+ * cell to its neighbors by index arithmetic. Layouts other than ROW_MAJOR need
+ * more than size * size cells: TILED has a column of padding blocks right of the
+ * board, and MORTON up to four times as many cells if size is not a power of two
+ * (it only goes up to size 2^15). The cells no coordinate maps to are padding.
+ */
+
+public enum CellLayout {
+    ROW_MAJOR {
+        int[] columnOffsets(int size)
+        {
+            int[] ans = new int[size];
+            for (int x = 0; x < size; x++)
+            {
+                ans[x] = x;
+            }
+            return ans;
+        }
+
+        int[] rowOffsets(int size)
+        {
+            int[] ans = new int[size];
+            for (int y = 0; y < size; y++)
+            {
+                ans[y] = y * size;
+            }
+            return ans;
+        }
+    },
+
+    TILED {
+        int[] columnOffsets(int size)
+        {
+            int[] ans = new int[size];
+            for (int x = 0; x < size; x++)
+            {
+                ans[x] = (x / TILE) * TILE * TILE + x % TILE;
+            }
+            return ans;
+        }
+
+        int[] rowOffsets(int size)
+        {
+            int[] ans = new int[size];
+            for (int y = 0; y < size; y++)
+            {
+                ans[y] = (y / TILE) * tileRowLength(size) + (y % TILE) * TILE;
+            }
+            return ans;
+        }
+    },
+
+    MORTON {
+        int[] columnOffsets(int size)
+        {
+            int[] ans = new int[size];
+            for (int x = 0; x < size; x++)
+            {
+                ans[x] = spread(x);
+            }
+            return ans;
+        }
+
+        int[] rowOffsets(int size)
+        {
+            if (size > 1 << 15)
+            {
+                throw new IllegalArgumentException("no Z-order of size " + size);
+            }
+            int[] ans = new int[size];
+            for (int y = 0; y < size; y++)
+            {
+                ans[y] = spread(y) << 1;
+            }
+            return ans;
+        }
+    };
+
+    // the side of the blocks of TILED
+    static final int TILE = 8;
+
+    /**
+     * Returns the offset of every column: x maps to columnOffsets(size)[x] plus the
+     * offset of its row.
+     */
+    abstract int[] columnOffsets(int size);
+
+    /**
+     * Returns the offset of every row.
+     */
+    abstract int[] rowOffsets(int size);
+
+    /**
+     * Returns the number of cells in a row of tiles of TILED. Every row has at
+     * least one column of padding to the right of the board, so that the cell left
+     * of the left side is padding too.
+     */
+    static int tileRowLength(int size)
+    {
+        return (size / TILE + 1) * TILE * TILE;
+    }
+
+    /**
+     * Returns the number of cells a board of the given size needs in this layout.
+     */
+    int length(int size)
+    {
+        return size == 0 ? 0 : columnOffsets(size)[size - 1] + rowOffsets(size)[size - 1] + 1;
+    }
+
+    /**
+     * Returns v with its bits moved to the even positions (bit k to bit 2k).
+     */
+    private static int spread(int v)
+    {
+        v &= 0xFFFF;
+        v = (v | (v << 8)) & 0x00FF00FF;
+        v = (v | (v << 4)) & 0x0F0F0F0F;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+    }
+}
@@ -0,0 +1,44 @@
+import java.io.Closeable;
+
+/**
+ * A CellStore is a flat run of bytes addressed by long offsets, used by LargeBoard
+ * to keep one byte per cell (see PackedBoard for the encoding) plus a small header.
+ * It may live on the heap or outside of it.
+ */
+
+public interface CellStore extends Closeable {
+    /**
+     * Returns the number of bytes in this store.
+     */
+    long length();
+
+    /**
+     * Returns the byte at the given offset.
+     */
+    byte get(long offset);
+
+    /**
+     * Sets the byte at the given offset.
+     */
+    void set(long offset, byte value);
+
+    /**
+     * Returns the long at the given offset, which must be a multiple of 8.
+     */
+    long getLong(long offset);
+
+    /**
+     * Sets the long at the given offset, which must be a multiple of 8.
+     */
+    void setLong(long offset, long value);
+
+    /**
+     * Writes any changes through to the backing storage, if there is one.
+     */
+    void flush();
+
+    /**
+     * Releases this store. Heap stores have nothing to release.
+     */
+    void close();
+}
@@ -10,7 +10,21 @@ public class Constants {
   public static final int NUM_GAMES_TO_AUTOPLAY = 2;
   public static final int MAX_DIM = 101;
   public static final String TEST_GRAPH = "results.png";
+  public static final String FOOTPRINT_REPORT = "footprint.csv";
+  public static final int FOOTPRINT_MAX_SIZE = 1024;
+  public static final int TOURNAMENT_GAMES = 32;
+  public static final int TOURNAMENT_MAX_SIZE = 32;
+  public static final int GRAPH_WIDTH = 640;
+  public static final int GRAPH_HEIGHT = 480;
   
   public static final int DEFAULT_SIZE = 5;
+
+  public static final int PARALLEL_FLOOD_SIZE = 4096;
+  public static final int SUGGEST_CACHE_SIZE = 1 << 16;
+  public static final long MCTS_HINT_MILLIS = 50;
+  public static final long MCTS_AUTOPLAY_MILLIS = 5;
+  public static final int GENETIC_POPULATION = 64;
+  public static final long GENETIC_AUTOPLAY_MILLIS = 5;
+  public static final int PUZZLE_RATING_DEPTH = 2;
 }
 
@@ -179,6 +179,17 @@ public class Coord implements Comparable<Coord> {
         return (((int) bits) ^ ((int) (bits >> 32)));
     }
 
+    /**
+     * Packs this coordinate into one int, (y << 16) | x, the key used by CoordMap.
+     * Coordinates on boards smaller than 32768 pack to distinct non-negative ints;
+     * off-board ones may pack to negative ints, which CoordMap treats as absent.
+     * @return int
+     */
+    public int pack()
+    {
+        return (y << 16) | x;
+    }
+
     /**
      * Returns this Coord as a string of the form (x, y).
      */
@@ -0,0 +1,179 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A map from coordinates (or board indices) to objects backed by a primitive
+ * open-addressing table; see CoordTable. Null values are not allowed.
+ */
+
+public class CoordMap<V> extends CoordTable {
+    private Object[] values, stashed;
+
+    /**
+     * Constructs an empty map sized for the given number of keys.
+     */
+    public CoordMap(int expected)
+    {
+        super(expected);
+    }
+
+    public CoordMap()
+    {
+        this(8);
+    }
+
+    public boolean containsKey(Coord coord)
+    {
+        return containsKey(coord.pack());
+    }
+
+    public boolean containsKey(int key)
+    {
+        return key >= 0 && find(key) >= 0;
+    }
+
+    public V get(Coord coord)
+    {
+        return get(coord.pack());
+    }
+
+    /**
+     * Returns the value of the key, or null if it is absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key)
+    {
+        int slot = key < 0 ? -1 : find(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public V put(Coord coord, V value)
+    {
+        return put(coord.pack(), value);
+    }
+
+    /**
+     * Sets the value of the key; returns the previous value (or null).
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("null value for key " + key);
+        }
+        int slot = claim(key);
+        V old = isNew() ? null : (V) values[slot];
+        values[slot] = value;
+        return old;
+    }
+
+    /**
+     * Copies every entry of the given map into this one.
+     */
+    @SuppressWarnings("unchecked")
+    public void putAll(CoordMap<? extends V> that)
+    {
+        for (int slot = 0; slot < that.keys.length; slot++)
+        {
+            if (that.keys[slot] != FREE)
+            {
+                put(that.keys[slot], (V) that.values[slot]);
+            }
+        }
+    }
+
+    public V remove(Coord coord)
+    {
+        return remove(coord.pack());
+    }
+
+    /**
+     * Removes the key; returns its value (or null if it was absent).
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key)
+    {
+        int slot = key < 0 ? -1 : find(key);
+        if (slot < 0)
+        {
+            return null;
+        }
+        V old = (V) values[slot];
+        removeAt(slot);
+        return old;
+    }
+
+    /**
+     * Returns the values of this map, in no particular order. The map must not be
+     * changed while they are iterated.
+     */
+    public Iterable<V> values()
+    {
+        return () -> new Iterator<V>() {
+            private int slot = advance(0);
+
+            private int advance(int from)
+            {
+                while (from < keys.length && keys[from] == FREE)
+                {
+                    from++;
+                }
+                return from;
+            }
+
+            public boolean hasNext()
+            {
+                return slot < keys.length;
+            }
+
+            @SuppressWarnings("unchecked")
+            public V next()
+            {
+                if (slot >= keys.length)
+                {
+                    throw new NoSuchElementException();
+                }
+                V value = (V) values[slot];
+                slot = advance(slot + 1);
+                return value;
+            }
+        };
+    }
+
+    void allocateValues(int capacity)
+    {
+        values = new Object[capacity];
+    }
+
+    void stashValues()
+    {
+        stashed = values;
+    }
+
+    void transfer(int oldSlot, int newSlot)
+    {
+        values[newSlot] = stashed[oldSlot];
+    }
+
+    void dropStash()
+    {
+        stashed = null;
+    }
+
+    void clearValues()
+    {
+        Arrays.fill(values, null);
+    }
+
+    void move(int from, int to)
+    {
+        values[to] = values[from];
+    }
+
+    void release(int slot)
+    {
+        values[slot] = null;
+    }
+}
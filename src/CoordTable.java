@@ -0,0 +1,232 @@
+import java.util.Arrays;
+
+/**
+ * CoordTable is the open-addressing hash table behind CoordMap. Keys are
+ * coordinates packed into one int by Coord.pack(), or any other non-negative int
+ * such as a board index, and live in a plain int[] probed linearly, so there is no
+ * boxing and no entry object per key. Subclasses keep their values in arrays
+ * parallel to the keys.
+ *
+ * The table is at most half full. Removal shifts later keys of the same probe run
+ * back instead of leaving tombstones, so lookups never slow down with churn.
+ */
+
+abstract class CoordTable {
+    static final int FREE = -1;
+
+    int[] keys;
+    private int size;
+    private int shift;
+    private boolean claimedNew;
+
+    CoordTable(int expected)
+    {
+        int capacity = 4;
+        while (capacity < 2 * expected)
+        {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Allocates empty key and value arrays of the given power-of-two capacity.
+     */
+    private void allocate(int capacity)
+    {
+        keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        shift = Integer.numberOfLeadingZeros(capacity - 1);
+        allocateValues(capacity);
+    }
+
+    /**
+     * Rebuilds the table with twice the capacity, moving every key and its value.
+     */
+    private void grow()
+    {
+        int[] oldKeys = keys;
+        stashValues();
+        allocate(2 * oldKeys.length);
+        size = 0;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++)
+        {
+            if (oldKeys[oldSlot] != FREE)
+            {
+                transfer(oldSlot, claim(oldKeys[oldSlot]));
+            }
+        }
+        dropStash();
+    }
+
+    /**
+     * Returns the number of keys in this table.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns true iff this table holds no keys.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Removes all keys, keeping the table allocated.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, FREE);
+        size = 0;
+        clearValues();
+    }
+
+    /**
+     * Returns the home slot of the key (Fibonacci hashing of the packed key).
+     */
+    private int home(int key)
+    {
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Returns the slot holding the key, or -1 if it is absent.
+     */
+    final int find(int key)
+    {
+        int mask = keys.length - 1;
+        for (int slot = home(key); ; slot = (slot + 1) & mask)
+        {
+            int k = keys[slot];
+            if (k == key)
+            {
+                return slot;
+            }
+            if (k == FREE)
+            {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of the key, claiming a free slot for it (and growing the
+     * table first if needed) when it is absent. Callers can tell a new key by
+     * checking isNew() right after.
+     */
+    final int claim(int key)
+    {
+        if (key < 0)
+        {
+            throw new IllegalArgumentException("negative key " + key);
+        }
+        if (2 * (size + 1) > keys.length)
+        {
+            grow();
+        }
+        int mask = keys.length - 1;
+        for (int slot = home(key); ; slot = (slot + 1) & mask)
+        {
+            int k = keys[slot];
+            if (k == key)
+            {
+                claimedNew = false;
+                return slot;
+            }
+            if (k == FREE)
+            {
+                keys[slot] = key;
+                size++;
+                claimedNew = true;
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Returns true iff the last claim() added its key.
+     */
+    final boolean isNew()
+    {
+        return claimedNew;
+    }
+
+    /**
+     * Removes the key in the given slot, shifting back the keys after it in the same
+     * probe run.
+     */
+    final void removeAt(int slot)
+    {
+        int mask = keys.length - 1;
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != FREE; next = (next + 1) & mask)
+        {
+            int h = home(keys[next]);
+            // Move keys[next] into the gap unless its home lies cyclically in (gap, next].
+            if (((next - h) & mask) >= ((next - gap) & mask))
+            {
+                keys[gap] = keys[next];
+                move(next, gap);
+                gap = next;
+            }
+        }
+        keys[gap] = FREE;
+        release(gap);
+        size--;
+    }
+
+    /**
+     * Allocates the value array(s) for the given capacity.
+     */
+    abstract void allocateValues(int capacity);
+
+    /**
+     * Keeps the current value array(s) aside while the table grows.
+     */
+    abstract void stashValues();
+
+    /**
+     * Copies the stashed value of oldSlot into slot newSlot of the grown table.
+     */
+    abstract void transfer(int oldSlot, int newSlot);
+
+    /**
+     * Forgets the stashed value array(s) once the table has grown.
+     */
+    abstract void dropStash();
+
+    /**
+     * Drops all values.
+     */
+    abstract void clearValues();
+
+    /**
+     * Moves the value in slot from to slot to.
+     */
+    abstract void move(int from, int to);
+
+    /**
+     * Drops the value in the given (now free) slot.
+     */
+    abstract void release(int slot);
+
+    /**
+     * Returns the x-coordinate of a key packed by Coord.pack().
+     */
+    public static int x(int key)
+    {
+        return key & 0xFFFF;
+    }
+
+    /**
+     * Returns the y-coordinate of a key packed by Coord.pack().
+     */
+    public static int y(int key)
+    {
+        return key >>> 16;
+    }
+}
@@ -0,0 +1,307 @@
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+/**
+ * FloodHarness checks that all flood implementations are equivalent and compares
+ * their speed. Every registered implementation plays the same random, seeded move
+ * sequences on the same seeded boards; after every move their states must be
+ * identical to the state of the first (reference) implementation.
+ *
+ * Board's flood functions (flood, flood1, flood2, ...) are registered automatically,
+ * as are both fills of PackedBoard (and the sequential one in the tiled and Z-order
+ * layouts), the scanline fill of LargeBoard, a batch of one game and a
+ * MultiRegionBoard with one region in the corner. Any new engine should be
+ * registered here and pass check() before it replaces an old one.
+ */
+
+public class FloodHarness {
+    /**
+     * One board driven by one flood implementation.
+     */
+    public interface Flooder {
+        /**
+         * Applies one move.
+         */
+        void flood(WaterColor color);
+
+        /**
+         * Returns true iff the board is fully flooded.
+         */
+        boolean fullyFlooded();
+
+        /**
+         * Returns the current state, for comparison with the other implementations.
+         */
+        PackedBoard snapshot();
+    }
+
+    private static final Map<String, BiFunction<Integer, Long, Flooder>> engines = new LinkedHashMap<>();
+
+    static {
+        for (Method floodFunction : Game.floodFunctions())
+        {
+            register("Board." + floodFunction.getName(), (size, seed) -> boardFlooder(new Board(size, seed), floodFunction));
+        }
+        register("PackedBoard.floodSequential", (size, seed) -> packedFlooder(new PackedBoard(size, seed), false));
+        register("PackedBoard.floodParallel", (size, seed) -> packedFlooder(new PackedBoard(size, seed), true));
+        register("PackedBoard.tiled", (size, seed) -> packedFlooder(new PackedBoard(size, seed, CellLayout.TILED), false));
+        register("PackedBoard.morton", (size, seed) -> packedFlooder(new PackedBoard(size, seed, CellLayout.MORTON), false));
+        register("LargeBoard.flood", (size, seed) -> largeFlooder(
+                new LargeBoard(new HeapCellStore(LargeBoard.storeLength(size)), size, seed)));
+        register("BoardBatch.flood", (size, seed) -> batchFlooder(new BoardBatch(size, new long[] { seed })));
+        register("MultiRegionBoard.flood", (size, seed) -> multiRegionFlooder(new MultiRegionBoard(size, seed)));
+    }
+
+    private FloodHarness() {
+    }
+
+    /**
+     * Registers a flood implementation under the given name. The factory builds the
+     * board of a given size and seed (with the same colors as new Board(size, seed)).
+     */
+    public static synchronized void register(String name, BiFunction<Integer, Long, Flooder> factory)
+    {
+        engines.put(name, factory);
+    }
+
+    /**
+     * Returns the names of all registered implementations, the reference first.
+     */
+    public static synchronized List<String> names()
+    {
+        return new ArrayList<>(engines.keySet());
+    }
+
+    /**
+     * Plays one random game (moves drawn from a generator seeded with seed, and the
+     * board's own color included, which must be a no-op) on a board of the given
+     * size with every implementation, and throws an AssertionError naming the first
+     * implementation whose state differs from the reference.
+     * @return int the number of moves played
+     */
+    public static int check(int size, long seed)
+    {
+        List<String> names = names();
+        List<Flooder> flooders = new ArrayList<>();
+        for (String name : names)
+        {
+            flooders.add(engines.get(name).apply(size, seed));
+        }
+        verify(names, flooders, size, seed, 0);
+
+        Random gen = new Random(seed);
+        int moves = 0;
+        while (!flooders.get(0).fullyFlooded())
+        {
+            WaterColor color = WaterColor.pickOne(gen);
+            for (Flooder flooder : flooders)
+            {
+                flooder.flood(color);
+            }
+            verify(names, flooders, size, seed, ++moves);
+        }
+        return moves;
+    }
+
+    private static void verify(List<String> names, List<Flooder> flooders, int size, long seed, int move)
+    {
+        PackedBoard expected = flooders.get(0).snapshot();
+        for (int i = 1; i < flooders.size(); i++)
+        {
+            PackedBoard actual = flooders.get(i).snapshot();
+            if (!expected.equals(actual) || flooders.get(i).fullyFlooded() != expected.fullyFlooded())
+            {
+                throw new AssertionError(names.get(i) + " differs from " + names.get(0) + " on a board of size "
+                        + size + " (seed " + seed + ") after move " + move + ":\n" + actual + "expected:\n" + expected);
+            }
+        }
+    }
+
+    /**
+     * Returns the mean time in nanoseconds each implementation needs to play the given
+     * number of random games on boards of the given size, in the order of names().
+     */
+    public static double[] time(int size, int games, long seed)
+    {
+        List<String> names = names();
+        double[] ans = new double[names.size()];
+        for (int k = 0; k < names.size(); k++)
+        {
+            BiFunction<Integer, Long, Flooder> factory = engines.get(names.get(k));
+            Random seeds = new Random(seed);
+            long total = 0;
+            for (int g = 0; g < games; g++)
+            {
+                long boardSeed = seeds.nextLong();
+                Flooder flooder = factory.apply(size, boardSeed);
+                Random gen = new Random(boardSeed);
+                long startTime = System.nanoTime();
+                while (!flooder.fullyFlooded())
+                {
+                    flooder.flood(WaterColor.pickOne(gen));
+                }
+                total += System.nanoTime() - startTime;
+            }
+            ans[k] = (double) total / games;
+        }
+        return ans;
+    }
+
+    private static Flooder boardFlooder(Board board, Method floodFunction)
+    {
+        return new Flooder() {
+            public void flood(WaterColor color)
+            {
+                try
+                {
+                    floodFunction.invoke(board, color);
+                }
+                catch (IllegalAccessException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+                catch (InvocationTargetException e)
+                {
+                    throw new IllegalStateException(floodFunction.getName() + " failed", e.getCause());
+                }
+            }
+
+            public boolean fullyFlooded()
+            {
+                return board.fullyFlooded();
+            }
+
+            public PackedBoard snapshot()
+            {
+                return board.pack();
+            }
+        };
+    }
+
+    private static Flooder packedFlooder(PackedBoard board, boolean parallel)
+    {
+        return new Flooder() {
+            public void flood(WaterColor color)
+            {
+                if (parallel)
+                    board.floodParallel(color);
+                else
+                    board.floodSequential(color);
+            }
+
+            public boolean fullyFlooded()
+            {
+                return board.fullyFlooded();
+            }
+
+            public PackedBoard snapshot()
+            {
+                return new PackedBoard(board);
+            }
+        };
+    }
+
+    private static Flooder largeFlooder(LargeBoard board)
+    {
+        return new Flooder() {
+            public void flood(WaterColor color)
+            {
+                board.flood(color);
+            }
+
+            public boolean fullyFlooded()
+            {
+                return board.fullyFlooded();
+            }
+
+            public PackedBoard snapshot()
+            {
+                return board.toPackedBoard();
+            }
+        };
+    }
+
+    private static Flooder batchFlooder(BoardBatch batch)
+    {
+        return new Flooder() {
+            public void flood(WaterColor color)
+            {
+                batch.flood(new WaterColor[] { color });
+            }
+
+            public boolean fullyFlooded()
+            {
+                return batch.fullyFlooded(0);
+            }
+
+            public PackedBoard snapshot()
+            {
+                return batch.toPackedBoard(0);
+            }
+        };
+    }
+
+    private static Flooder multiRegionFlooder(MultiRegionBoard board)
+    {
+        board.addRegion(Coord.ORIGIN);
+        return new Flooder() {
+            public void flood(WaterColor color)
+            {
+                board.flood(0, color);
+            }
+
+            public boolean fullyFlooded()
+            {
+                return board.fullyOwned();
+            }
+
+            public PackedBoard snapshot()
+            {
+                return board.toPackedBoard(0);
+            }
+        };
+    }
+
+    /**
+     * Checks all implementations on many seeded boards, then prints their mean time
+     * per game for a range of sizes, relative to the reference.
+     */
+    public static void main(String... args)
+    {
+        List<String> names = names();
+        Random seeds = new Random(Constants.MAX_DIM);
+        int checked = 0;
+        for (int size = 1; size <= 2 * Constants.MAX_BOARD_SIZE_FOR_AUTOPLAY; size++)
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                check(size, seeds.nextLong());
+                checked++;
+            }
+        }
+        System.out.println("all " + names.size() + " flood implementations agree on " + checked + " games");
+
+        System.out.printf("%6s", "size");
+        for (String name : names)
+        {
+            System.out.printf("  %28s", name);
+        }
+        System.out.println();
+        for (int size = 5; size <= Constants.MAX_DIM; size *= 2)
+        {
+            double[] times = time(size, Constants.NUM_GAMES_TO_AUTOPLAY * 5, size);
+            System.out.printf("%6d", size);
+            for (double t : times)
+            {
+                System.out.printf("  %15.3f ms (%5.2fx)", t / 1e6, times[0] / t);
+            }
+            System.out.println();
+        }
+    }
+}
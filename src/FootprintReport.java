@@ -0,0 +1,184 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A FootprintReport collects the memory cost of boards: the bytes a board retains
+ * on the heap, per implementation and size, and the bytes allocated per move and
+ * per game while autoplaying. Game.footprintTest() fills one in; the report prints
+ * as a fixed-width table and saves as CSV, so it can be compared across releases.
+ *
+ * Retained bytes are measured as the growth of the used heap, after collecting
+ * garbage, from building a number of boards and keeping them all reachable.
+ * Allocated bytes come from the JVM's per-thread allocation counter, where the
+ * JVM provides one.
+ */
+
+public class FootprintReport {
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    // holds the copies being measured; an array that never escaped could be
+    // optimized away by the JIT, copies and all
+    private static Object[] kept;
+
+    private final List<Row> rows = new ArrayList<>();
+
+    /**
+     * One line of the report; unknown amounts are -1.
+     */
+    private static final class Row {
+        final String name;
+        final int size;
+        final long retained, perMove, perGame;
+
+        Row(String name, int size, long retained, long perMove, long perGame)
+        {
+            this.name = name;
+            this.size = size;
+            this.retained = retained;
+            this.perMove = perMove;
+            this.perGame = perGame;
+        }
+    }
+
+    /**
+     * Adds the heap retained by one board of the given implementation and size.
+     */
+    public void addRetained(String name, int size, long retained)
+    {
+        rows.add(new Row(name, size, retained, -1, -1));
+    }
+
+    /**
+     * Adds the bytes allocated per move and per game while autoplaying boards of the
+     * given implementation and size.
+     */
+    public void addAllocated(String name, int size, long perMove, long perGame)
+    {
+        rows.add(new Row(name, size, -1, perMove, perGame));
+    }
+
+    /**
+     * Returns the mean number of heap bytes retained by an object from the given
+     * factory, measured over the given number of copies.
+     */
+    public static long retainedBytes(Supplier<?> factory, int copies)
+    {
+        return retainedBytes(factory, copies, FootprintReport::usedHeap);
+    }
+
+    /**
+     * Returns the mean growth of the given heap reading from building the given
+     * number of copies from the factory and keeping them all reachable, or 0 if it
+     * shrank. With allocatedBytes() as the reading this is the bytes allocated per
+     * copy, an upper bound on what it retains that needs no collection.
+     */
+    public static synchronized long retainedBytes(Supplier<?> factory, int copies, LongSupplier heap)
+    {
+        kept = new Object[copies];
+        long before = heap.getAsLong();
+        for (int i = 0; i < copies; i++)
+        {
+            kept[i] = factory.get();
+        }
+        long after = heap.getAsLong();
+        kept = null;
+        return Math.max(0, (after - before) / copies);
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or -1 if
+     * the JVM does not count them.
+     */
+    public static long allocatedBytes()
+    {
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+            if (counting.isThreadAllocatedMemorySupported() && counting.isThreadAllocatedMemoryEnabled())
+            {
+                return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the used heap once garbage collection stops reclaiming anything, i.e.
+     * the least used heap seen over a run of collections, ended by four in a row that
+     * found nothing more. (The serial collector may leave dead objects in place as
+     * filler, and only compacts fully every fourth collection.)
+     */
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long least = Long.MAX_VALUE;
+        for (int i = 0, idle = 0; i < 32 && idle < 4; i++)
+        {
+            System.gc();
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            if (used < least)
+            {
+                least = used;
+                idle = 0;
+            }
+            else
+            {
+                idle++;
+            }
+        }
+        return least;
+    }
+
+    /**
+     * Returns the report as a table, one row per measurement, with the retained
+     * bytes also given per tile.
+     */
+    public String toString()
+    {
+        StringBuilder ans = new StringBuilder();
+        ans.append(String.format("%-12s %6s %14s %10s %14s %16s%n",
+                "board", "size", "retained B", "B/tile", "alloc B/move", "alloc B/game"));
+        for (Row row : rows)
+        {
+            ans.append(String.format("%-12s %6d %14s %10s %14s %16s%n", row.name, row.size,
+                    amount(row.retained),
+                    row.retained < 0 ? "-" : String.format("%.1f", (double) row.retained / ((long) row.size * row.size)),
+                    amount(row.perMove), amount(row.perGame)));
+        }
+        return ans.toString();
+    }
+
+    private static String amount(long bytes)
+    {
+        return bytes < 0 ? "-" : Long.toString(bytes);
+    }
+
+    /**
+     * Saves the report to the given file as CSV, with empty fields for unknown
+     * amounts.
+     */
+    public void write(File file) throws FileNotFoundException
+    {
+        try (PrintWriter out = new PrintWriter(file))
+        {
+            out.println("board,size,retained,allocPerMove,allocPerGame");
+            for (Row row : rows)
+            {
+                out.println(row.name + "," + row.size + "," + csv(row.retained) + "," + csv(row.perMove) + ","
+                        + csv(row.perGame));
+            }
+        }
+    }
+
+    private static String csv(long bytes)
+    {
+        return bytes < 0 ? "" : Long.toString(bytes);
+    }
+}
@@ -25,6 +25,8 @@ public class GUI extends JFrame {
   private JMenu steps = new JMenu();
   private Board board;
   private Game game;
+  private TileButton[] buttons;  // in row-major order, like the tile indices of BoardChange
+  private BoardListener repainter = this::repaintChanged;
   
   // Boilerplate setup.
   static {
@@ -46,9 +48,13 @@ public class GUI extends JFrame {
     int size = board.getSize();
     
     grid = new JPanel(new GridLayout(size, size));
+    buttons = new TileButton[size * size];
     for (int y = 0; y < size; y++)
-      for (int x = 0; x < size; x++) 
-        grid.add(new TileButton(board.get(new Coord(x, y))));
+      for (int x = 0; x < size; x++) {
+        buttons[y * size + x] = new TileButton(board.get(new Coord(x, y)));
+        grid.add(buttons[y * size + x]);
+      }
+    board.addListener(repainter);
 
     setSteps();
     initMenu();
@@ -59,6 +65,28 @@ public class GUI extends JFrame {
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
   }
  
+  /**
+   * Stops listening to the board, which may outlive this view, and disposes of it.
+   */
+  public void dispose() {
+    board.removeListener(repainter);
+    super.dispose();
+  }
+
+  /**
+   * Repaints only the tiles a move changed, or everything after a reset.
+   */
+  private void repaintChanged(BoardChange change) {
+    if (change.isReset()) {
+      grid.repaint();
+      return;
+    }
+    for (int i = 0; i < change.getRecoloredCount(); i++)
+      buttons[change.getRecolored(i)].repaint();
+    for (int i = 0; i < change.getAbsorbedCount(); i++)
+      buttons[change.getAbsorbed(i)].repaint();
+  }
+
   /**
    * Sets up the menu.
    */
@@ -91,7 +119,7 @@ public class GUI extends JFrame {
     help.add(rules);
 
     JMenuItem suggest = new JMenuItem("Suggest");
-    suggest.addActionListener(e -> JOptionPane.showMessageDialog(this, board.suggest())); 
+    suggest.addActionListener(e -> JOptionPane.showMessageDialog(this, board.suggest(Strategies.MCTS_HINT))); 
     help.add(suggest);
 
     menuBar.add(steps);
@@ -99,10 +127,12 @@ public class GUI extends JFrame {
   }
 
   /**
-   * Updates the display to show the number of steps used by the player so far.
+   * Updates the display to show the number of steps used by the player so far,
+   * and whether the game can still be won.
    */
   public void setSteps() {
-    steps.setText(game.getSteps() + "/" + game.getStepLimit());
+    steps.setText(game.getSteps() + "/" + game.getStepLimit()
+        + (game.stillWinnable() ? "  still winnable" : "  can no longer be won"));
   }
 
   /**
@@ -121,9 +151,8 @@ public class GUI extends JFrame {
         public void mousePressed(MouseEvent e) {
           // Update the model
           game.select(tile.getColor());
-          // Update the view
+          // Update the view (the board tells repaintChanged which tiles to redraw)
           setSteps();
-          GUI.this.repaint();
           if (board.fullyFlooded()) 
             youWin();
           else if (game.noMoreSteps()) 
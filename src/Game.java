@@ -1,8 +1,7 @@
-import static java.lang.Math.toIntExact;
-
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.Random;
 
 import javax.swing.SwingUtilities;
 
@@ -21,7 +20,8 @@ public class Game {
   private boolean interactive = true;
 
   private int currentStep;
-  private List<Integer> thisRun = new LinkedList<>();  // for timings when running in batch mode
+  private Random seeds = new Random();  // seeds for the boards played by this game
+  private TimingSeries thisRun;  // for timings when running in batch mode
 
   /**
    * Runs a game in interactive mode. See comment for how to run in batch (i.e., testing) mode.
@@ -33,6 +33,10 @@ public class Game {
     
     // Uncomment the following line to run a batch of games and display a graph of the timings:
 //     new Game(false).batchTest();
+    // Uncomment the following line to print (and save) the memory footprint of boards by size:
+//     new Game(false).footprintTest();
+    // Uncomment the following line to play all suggest strategies against each other:
+//     new Game(false).tournamentTest();
   }
 
   /**
@@ -71,11 +75,15 @@ public class Game {
   }
 
   /**
-   * Initializes this game to a fresh state and starts up the gui.
+   * Initializes this game to a fresh state and starts up the gui. The current
+   * board is reset in place when it already has the right size.
    */
   
   private void init() {
-    board = new Board(size);
+    if (board == null || board.getSize() != size)
+      board = new Board(size, seeds.nextLong());
+    else
+      board.reset(seeds.nextLong());
     currentStep = 0;
     if (interactive)
       theView = new GUI(this);
@@ -89,6 +97,16 @@ public class Game {
     return currentStep == getStepLimit();
   }
   
+  /**
+   * Returns true unless the board's lower bound on the moves left says the game
+   * cannot be won within the step limit any more. Cheap enough to ask after
+   * every move.
+   */
+  
+  public boolean stillWinnable() {
+    return currentStep + board.getLowerBound() <= getStepLimit();
+  }
+  
   /**
    * Returns the number of steps used by the player so far during this game.
    */
@@ -102,6 +120,14 @@ public class Game {
    */
   
   public int getStepLimit() {
+    return getStepLimit(size);
+  }
+
+  /**
+   * Returns the maximum number of steps for a game on a board of the given size.
+   */
+  
+  public static int getStepLimit(int size) {
     return size * 25 / 14 + 1;
   }
 
@@ -134,25 +160,45 @@ public class Game {
     }
   }
 
+  /**
+   * Returns the flood functions defined in the Board class (flood, flood1, flood2, ...),
+   * in order.
+   */
+  
+  static List<Method> floodFunctions() {
+    List<Method> ans = new LinkedList<>();
+    Class<?> c = Board.class; 
+    Class<?>[] argTypes = new Class[] { WaterColor.class };
+    try {
+      for (int k = 0; ; k++)
+        ans.add(c.getDeclaredMethod("flood" + (k == 0 ? "" : k), argTypes));
+    }
+    catch (NoSuchMethodException e) {
+      // All done! No more flood functions left.
+    }
+    return ans;
+  }
+
   /**
    * Plays a series of games in batch mode, where player moves are selected 
    * according to the board's suggestions, and the kth flood function is used,
-   * and adds the averaged elapsed time to the thisRun list. 
+   * and adds the median elapsed time (with its percentile band) to the thisRun series. 
+   * A game is abandoned as soon as stillWinnable() says it is lost; the moves do not
+   * depend on the flood function, so on a given board every function stops at the
+   * same move.
    */
   
   private void autoPlay(int k) {
-    long gameTime = 0;
+    double[] gameTimes = new double[Constants.NUM_GAMES_TO_AUTOPLAY];
     for (int i = 0; i < Constants.NUM_GAMES_TO_AUTOPLAY; i++) {
-      long startTime = System.currentTimeMillis();
-      while (!board.fullyFlooded())
+      long startTime = System.nanoTime();
+      while (!board.fullyFlooded() && stillWinnable())
         select(k, board.suggest());
-      long endTime = System.currentTimeMillis();
-      gameTime += (endTime - startTime);
+      long endTime = System.nanoTime();
+      gameTimes[i] = (endTime - startTime) / 1e6;
       init();
     }
-    gameTime /= Constants.NUM_GAMES_TO_AUTOPLAY;
-    // System.out.println(total);
-    thisRun.add(toIntExact(gameTime));
+    thisRun.add(size, gameTimes);
   }
 
   /**
@@ -161,16 +207,13 @@ public class Game {
    */
   
   private void batchTest() {
-    List<List<Integer>> allTimings = new LinkedList<>();
-    Class<?> c = Board.class; 
-    Class<?>[] argTypes = new Class[] { WaterColor.class };
-    int k = 0;
+    List<TimingSeries> allTimings = new LinkedList<>();
+    List<Method> functions = floodFunctions();
     try {
-      while (true) {
-        String name = "flood" + (k == 0 ? "" : k);
-        c.getDeclaredMethod(name, argTypes); // throws exception if no such method
+      for (int k = 0; k < functions.size(); k++) {
+        String name = functions.get(k).getName();
         System.out.println("running with " + name + " as the flood function");
-        thisRun = new LinkedList<>();
+        thisRun = new TimingSeries(name);
         for (int size = 1; size <= Constants.MAX_BOARD_SIZE_FOR_AUTOPLAY; size++) {
           System.out.println("testing a board of size " + size);
           resize(size);
@@ -178,15 +221,83 @@ public class Game {
         }
         System.out.println("timings for the above boards: " + thisRun);
         allTimings.add(thisRun);
-        k++;
       }
     }
-    catch (NoSuchMethodException e) {
-      // All done! No more flood functions left to try.
-    }
     finally {
       SwingUtilities.invokeLater(() -> new TimingGraph(allTimings));
     }
   }
-}
 
+  /**
+   * Measures the heap retained by a board of each implementation, for sizes from 1 to
+   * Constants.FOOTPRINT_MAX_SIZE, and the bytes allocated per move and per game while
+   * autoplaying boards up to Constants.MAX_DIM, then prints the report and saves it
+   * to Constants.FOOTPRINT_REPORT.
+   */
+  
+  void footprintTest() {
+    FootprintReport report = new FootprintReport();
+    for (int size : footprintSizes()) {
+      final int n = size;
+      int copies = Math.max(1, Math.min(1000, (1 << 20) / (size * size)));
+      System.out.println("measuring boards of size " + size);
+      report.addRetained("Board", size, FootprintReport.retainedBytes(() -> new Board(n, n), copies));
+      report.addRetained("PackedBoard", size, FootprintReport.retainedBytes(() -> new PackedBoard(n, n), copies));
+      report.addRetained("LargeBoard", size, FootprintReport.retainedBytes(
+          () -> new LargeBoard(new HeapCellStore(LargeBoard.storeLength(n)), n, n), copies));
+
+      if (size <= Constants.MAX_DIM) {
+        resize(size);
+        long moves = 0;
+        long startBytes = FootprintReport.allocatedBytes();
+        for (int i = 0; i < Constants.NUM_GAMES_TO_AUTOPLAY; i++) {
+          while (!board.fullyFlooded()) {
+            select(board.suggest());
+            moves++;
+          }
+          init();
+        }
+        long bytes = FootprintReport.allocatedBytes() - startBytes;
+        if (startBytes >= 0)
+          report.addAllocated("Board", size, moves == 0 ? 0 : bytes / moves, bytes / Constants.NUM_GAMES_TO_AUTOPLAY);
+      }
+    }
+    System.out.print(report);
+    try {
+      report.write(new java.io.File(Constants.FOOTPRINT_REPORT));
+    }
+    catch (java.io.FileNotFoundException e) {
+      System.out.println("Unable to save the footprint report: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the board sizes measured by footprintTest(): powers of two up to
+   * Constants.FOOTPRINT_MAX_SIZE, and Constants.MAX_DIM.
+   */
+  
+  static int[] footprintSizes() {
+    List<Integer> sizes = new LinkedList<>();
+    for (int size = 1; size <= Constants.FOOTPRINT_MAX_SIZE; size *= 2) {
+      if (size / 2 < Constants.MAX_DIM && Constants.MAX_DIM < size)
+        sizes.add(Constants.MAX_DIM);
+      sizes.add(size);
+    }
+    return sizes.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Plays a tournament of all registered suggest strategies on the same seeded boards
+   * of sizes 2, 4, 8, ... up to Constants.TOURNAMENT_MAX_SIZE, and prints the win
+   * rate, mean moves and CPU time per move of each.
+   */
+  
+  void tournamentTest() {
+    Tournament tournament = new Tournament(Constants.TOURNAMENT_GAMES, seeds.nextLong());
+    for (int size = 2; size <= Constants.TOURNAMENT_MAX_SIZE; size *= 2) {
+      System.out.println("playing boards of size " + size);
+      tournament.play(size);
+    }
+    System.out.print(tournament);
+  }
+}
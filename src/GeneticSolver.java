@@ -0,0 +1,365 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+/**
+ * GeneticSolver searches for a short solution of one position by evolving a
+ * population of move sequences.
+ *
+ * Every generation keeps the best few sequences as they are and breeds the rest
+ * from parents picked by tournament selection. Crossover joins a prefix of one
+ * parent to a suffix of the other at flood-equivalent points, i.e. where both
+ * prefixes lead to the same position, so the child's suffix means on its board
+ * exactly what it meant on its parent's. Mutation recolors or drops a move.
+ *
+ * Fitness is the number of moves to flood the board, or for sequences that do
+ * not get there, the number of tiles they flood. It is computed in parallel: the
+ * population is sorted and split into runs of consecutive sequences, and every
+ * worker scores its run with its own SequenceEvaluator, which plays shared
+ * prefixes only once.
+ */
+
+public class GeneticSolver {
+    private static final WaterColor[] COLORS = WaterColor.values();
+    private static final int TOURNAMENT = 3;
+    private static final int ELITES = 2;
+    private static final double CROSSOVER = 0.9;
+    private static final double MUTATION = 0.5;
+    private static final double EPSILON = 0.2;   // chance of a random move while seeding
+
+    private final PackedBoard start;
+    private final int length;   // genes per sequence, well over any sensible solution
+    private final Random random;
+    private final Individual[] population;
+    private final SequenceEvaluator[] evaluators;
+
+    private volatile WaterColor[] best;
+    private long bestFitness = -1;
+    private int seeded;        // individuals of the population seeded so far
+    private boolean scored;    // whether the whole population has been scored
+    private volatile boolean stopped;
+    private volatile long generations;
+    private volatile long elapsedNanos;
+
+    /**
+     * One sequence and what it does: counts[k] and hashes[k] describe the position
+     * after its first k moves, up to the moves played.
+     */
+    private static final class Individual {
+        final WaterColor[] genes;
+        final int[] counts, hashes;
+        int played;
+        long fitness;
+
+        Individual(int length)
+        {
+            genes = new WaterColor[length];
+            counts = new int[length + 1];
+            hashes = new int[length + 1];
+        }
+    }
+
+    /**
+     * Constructs a solver for the current state of the given board.
+     */
+    public GeneticSolver(Board board)
+    {
+        this(board.pack(), Constants.GENETIC_POPULATION, board.stateHash());
+    }
+
+    /**
+     * Constructs a solver for the given position with the given population size,
+     * whose random choices all derive from the given seed.
+     */
+    public GeneticSolver(PackedBoard start, int populationSize, long seed)
+    {
+        assert populationSize > ELITES;
+        this.start = new PackedBoard(start);
+        length = 2 * Game.getStepLimit(start.getSize()) + start.getSize();
+        random = new Random(seed);
+        population = new Individual[populationSize];
+        int workers = Math.min(populationSize, Runtime.getRuntime().availableProcessors());
+        evaluators = new SequenceEvaluator[workers];
+        for (int w = 0; w < workers; w++)
+        {
+            evaluators[w] = new SequenceEvaluator(start);
+        }
+    }
+
+    /**
+     * Seeds the population if that is not done yet, then evolves it until the given
+     * number of milliseconds have passed or stop() is called, and returns the best
+     * solution so far. Nothing is started after the deadline, so solve() overruns it
+     * by one seeded game, scoring pass or generation at most; the first call always
+     * seeds one game, so that there is a solution.
+     */
+    public WaterColor[] solve(long budgetMillis)
+    {
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000;
+        stopped = false;
+        seedPopulation(deadline);
+        if (!scored && seeded == population.length && !stopped && System.nanoTime() < deadline)
+        {
+            score(population, 0);
+            scored = true;
+        }
+        while (scored && !stopped && System.nanoTime() < deadline)
+        {
+            long startTime = System.nanoTime();
+            evolve();
+            elapsedNanos += System.nanoTime() - startTime;
+            generations++;
+        }
+        return getBest();
+    }
+
+    /**
+     * Runs solve() in the background. getBest() may be called meanwhile to take the
+     * best solution found so far.
+     */
+    public CompletableFuture<WaterColor[]> solveInBackground(long budgetMillis)
+    {
+        return CompletableFuture.supplyAsync(() -> solve(budgetMillis));
+    }
+
+    /**
+     * Makes a running solve() return after the current generation.
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+
+    /**
+     * Returns the best sequence found so far: the moves up to the one that floods
+     * the whole board, or all its moves if none does. Empty until solve() has
+     * seeded a game.
+     */
+    public WaterColor[] getBest()
+    {
+        return best == null ? new WaterColor[0] : best.clone();
+    }
+
+    /**
+     * Returns the number of generations evolved so far.
+     */
+    public long getGenerations()
+    {
+        return generations;
+    }
+
+    /**
+     * Returns the number of generations evolved per second of solving.
+     */
+    public double getGenerationsPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : generations * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Fills the rest of the population with epsilon-greedy games, each move
+     * absorbing the most tiles directly except for an occasional random one, padded
+     * with random moves, until it is full or the deadline has passed (after one game
+     * at least). The best game so far is kept as the best solution, so that the
+     * population need not be scored before solve() returns.
+     */
+    private void seedPopulation(long deadline)
+    {
+        PackedBoard board = new PackedBoard(start);
+        int[] counts = new int[COLORS.length];
+        while (seeded < population.length && (seeded == 0 || !stopped && System.nanoTime() < deadline))
+        {
+            Individual individual = new Individual(length);
+            board.copyFrom(start);
+            int played = length;
+            for (int k = 0; k < length; k++)
+            {
+                int pick = random.nextInt(COLORS.length);
+                if (board.fullyFlooded())
+                {
+                    played = Math.min(played, k);
+                    individual.genes[k] = COLORS[pick];
+                    continue;
+                }
+                if (random.nextDouble() >= EPSILON)
+                {
+                    board.countFrontier(counts);
+                    for (int c = 0; c < counts.length; c++)
+                    {
+                        if (counts[c] > counts[pick])
+                        {
+                            pick = c;
+                        }
+                    }
+                }
+                individual.genes[k] = COLORS[pick];
+                board.flood(COLORS[pick]);
+            }
+            population[seeded++] = individual;
+
+            individual.played = board.fullyFlooded() ? played : length;
+            individual.counts[individual.played] = board.getFloodedCount();
+            individual.fitness = fitness(individual);
+            if (individual.fitness > bestFitness)
+            {
+                bestFitness = individual.fitness;
+                best = Arrays.copyOf(individual.genes, individual.played);
+            }
+        }
+    }
+
+    /**
+     * Breeds the next generation in place, then scores it.
+     */
+    private void evolve()
+    {
+        Individual[] parents = population.clone();
+        for (int i = ELITES; i < population.length; i++)
+        {
+            Individual child = new Individual(length);
+            Individual mother = select(parents);
+            if (random.nextDouble() < CROSSOVER)
+            {
+                crossover(mother, select(parents), child);
+            }
+            else
+            {
+                System.arraycopy(mother.genes, 0, child.genes, 0, length);
+            }
+            if (random.nextDouble() < MUTATION)
+            {
+                mutate(child, mother.played);
+            }
+            population[i] = child;
+        }
+        score(population, ELITES);
+    }
+
+    /**
+     * Returns the fittest of a few random individuals.
+     */
+    private Individual select(Individual[] from)
+    {
+        Individual ans = from[random.nextInt(from.length)];
+        for (int i = 1; i < TOURNAMENT; i++)
+        {
+            Individual other = from[random.nextInt(from.length)];
+            if (other.fitness > ans.fitness)
+            {
+                ans = other;
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * Joins a prefix of a to a suffix of b at a random point where both lead to the
+     * same position, or at the same point of both if there is none.
+     */
+    private void crossover(Individual a, Individual b, Individual child)
+    {
+        int i = 1 + random.nextInt(Math.max(1, a.played));
+        int j = i;
+        int matches = 0;
+        for (int k = 1; k <= b.played; k++)
+        {
+            if (b.counts[k] == a.counts[i] && b.hashes[k] == a.hashes[i] && random.nextInt(++matches) == 0)
+            {
+                j = k;
+            }
+        }
+        System.arraycopy(a.genes, 0, child.genes, 0, i);
+        int n = Math.min(length - i, length - j);
+        System.arraycopy(b.genes, j, child.genes, i, n);
+        for (int k = i + n; k < length; k++)
+        {
+            child.genes[k] = COLORS[random.nextInt(COLORS.length)];
+        }
+    }
+
+    /**
+     * Recolors or drops a random move among the first played ones.
+     */
+    private void mutate(Individual child, int played)
+    {
+        int k = random.nextInt(Math.max(1, played));
+        if (random.nextBoolean())
+        {
+            child.genes[k] = COLORS[random.nextInt(COLORS.length)];
+        }
+        else
+        {
+            System.arraycopy(child.genes, k + 1, child.genes, k, length - k - 1);
+            child.genes[length - 1] = COLORS[random.nextInt(COLORS.length)];
+        }
+    }
+
+    /**
+     * Scores individuals from the given index on in parallel, sorts the population
+     * by fitness (best first), and records the best solution.
+     */
+    private void score(Individual[] individuals, int from)
+    {
+        Individual[] todo = Arrays.copyOfRange(individuals, from, individuals.length);
+        Arrays.sort(todo, (a, b) -> compare(a.genes, b.genes));
+        int workers = evaluators.length;
+        IntStream.range(0, workers).parallel().forEach(w -> {
+            SequenceEvaluator evaluator = evaluators[w];
+            for (int i = w * todo.length / workers; i < (w + 1) * todo.length / workers; i++)
+            {
+                Individual individual = todo[i];
+                individual.played = evaluator.trace(individual.genes, individual.counts, individual.hashes);
+                individual.fitness = fitness(individual);
+            }
+        });
+
+        Arrays.sort(individuals, Comparator.comparingLong((Individual individual) -> individual.fitness).reversed());
+        Individual top = individuals[0];
+        bestFitness = top.fitness;
+        best = Arrays.copyOf(top.genes, top.played);
+    }
+
+    /**
+     * Any sequence that floods the whole board beats any that does not, and shorter
+     * ones beat longer ones; the others compare by the number of tiles they flood.
+     */
+    private long fitness(Individual individual)
+    {
+        if (individual.counts[individual.played] == start.getSize() * start.getSize())
+        {
+            return (long) (length + 1 - individual.played) << 32;
+        }
+        return individual.counts[individual.played];
+    }
+
+    /**
+     * Solves seeded boards of a range of sizes for the given number of milliseconds
+     * each (one second by default), and reports solution lengths and generations
+     * per second.
+     */
+    public static void main(String... args)
+    {
+        long budget = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        for (int size = 6; size <= 48; size *= 2)
+        {
+            GeneticSolver solver = new GeneticSolver(new PackedBoard(size, size), Constants.GENETIC_POPULATION, size);
+            WaterColor[] solution = solver.solve(budget);
+            System.out.printf("size %3d: %3d moves (limit %3d) after %6d generations, %9.1f generations/s%n",
+                    size, solution.length, Game.getStepLimit(size), solver.getGenerations(), solver.getGenerationsPerSecond());
+        }
+    }
+
+    private static int compare(WaterColor[] a, WaterColor[] b)
+    {
+        for (int i = 0; i < a.length; i++)
+        {
+            if (a[i] != b[i])
+            {
+                return a[i].compareTo(b[i]);
+            }
+        }
+        return 0;
+    }
+}
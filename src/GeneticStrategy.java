@@ -0,0 +1,41 @@
+/**
+ * GeneticStrategy suggests the first move of the best solution a GeneticSolver
+ * finds for the board within a time budget.
+ */
+
+public class GeneticStrategy implements SuggestStrategy {
+    private final long budgetMillis;
+
+    /**
+     * Constructs a strategy evolving solutions for the given number of milliseconds
+     * per move.
+     */
+    public GeneticStrategy(long budgetMillis)
+    {
+        this.budgetMillis = budgetMillis;
+    }
+
+    public String getName()
+    {
+        return "genetic-" + budgetMillis + "ms";
+    }
+
+    public int getDepth()
+    {
+        return 0;
+    }
+
+    public boolean forksWorkers()
+    {
+        return true;
+    }
+
+    public WaterColor suggest(Board board)
+    {
+        if (board.fullyFlooded())
+        {
+            return board.get(Coord.ORIGIN).getColor();
+        }
+        return new GeneticSolver(board).solve(budgetMillis)[0];
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * GreedyStrategy looks a fixed number of moves ahead and suggests the first move
+ * of the sequence that floods the most tiles. A sequence that floods the whole
+ * board beats any that does not, and shorter ones beat longer ones. The search
+ * runs on packed copies of the board, one scratch copy per level, and skips moves
+ * that absorb nothing.
+ */
+
+public class GreedyStrategy implements SuggestStrategy {
+    private final int depth;
+
+    /**
+     * Constructs a greedy strategy looking the given number of moves ahead.
+     */
+    public GreedyStrategy(int depth)
+    {
+        assert depth > 0;
+        this.depth = depth;
+    }
+
+    public String getName()
+    {
+        return "greedy";
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public boolean isCacheable()
+    {
+        return true;
+    }
+
+    public WaterColor suggest(Board board)
+    {
+        PackedBoard[] levels = new PackedBoard[depth + 1];
+        levels[0] = board.pack();
+        for (int i = 1; i <= depth; i++)
+        {
+            levels[i] = new PackedBoard(levels[0]);
+        }
+        return suggest(levels);
+    }
+
+    /**
+     * Returns the suggestion for the position in levels[0], using levels[1..depth]
+     * (boards of the same size) as scratch. Lets callers that suggest many moves
+     * keep their scratch boards.
+     */
+    WaterColor suggest(PackedBoard[] levels)
+    {
+        assert levels.length == depth + 1;
+        WaterColor best = levels[0].getRegionColor();
+        long bestScore = Long.MIN_VALUE;
+        for (WaterColor color : WaterColor.values())
+        {
+            if (color == levels[0].getRegionColor())
+            {
+                continue;
+            }
+            levels[1].copyFrom(levels[0]);
+            if (levels[1].flood(color) == 0)
+            {
+                continue;
+            }
+            long score = search(levels, 1);
+            if (score > bestScore)
+            {
+                bestScore = score;
+                best = color;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the best score reachable from levels[level] within the remaining depth.
+     */
+    private long search(PackedBoard[] levels, int level)
+    {
+        PackedBoard current = levels[level];
+        if (current.fullyFlooded())
+        {
+            // Finishing early is worth more than any number of tiles.
+            return Long.MAX_VALUE - level;
+        }
+        long best = current.getFloodedCount();
+        if (level == depth)
+        {
+            return best;
+        }
+        PackedBoard next = levels[level + 1];
+        for (WaterColor color : WaterColor.values())
+        {
+            if (color == current.getRegionColor())
+            {
+                continue;
+            }
+            next.copyFrom(current);
+            if (next.flood(color) > 0)
+            {
+                best = Math.max(best, search(levels, level + 1));
+            }
+        }
+        return best;
+    }
+}
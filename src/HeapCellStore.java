@@ -0,0 +1,50 @@
+import java.nio.ByteBuffer;
+
+/**
+ * A CellStore on the heap, limited to 2^31 - 1 bytes.
+ */
+
+public class HeapCellStore implements CellStore {
+    private final ByteBuffer bytes;
+
+    /**
+     * Constructs a zeroed store of the given length.
+     */
+    public HeapCellStore(long length)
+    {
+        bytes = ByteBuffer.allocate(Math.toIntExact(length));
+    }
+
+    public long length()
+    {
+        return bytes.capacity();
+    }
+
+    public byte get(long offset)
+    {
+        return bytes.get((int) offset);
+    }
+
+    public void set(long offset, byte value)
+    {
+        bytes.put((int) offset, value);
+    }
+
+    public long getLong(long offset)
+    {
+        return bytes.getLong((int) offset);
+    }
+
+    public void setLong(long offset, long value)
+    {
+        bytes.putLong((int) offset, value);
+    }
+
+    public void flush()
+    {
+    }
+
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,377 @@
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A LargeBoard is a board whose cells live in a CellStore instead of in Java
+ * objects or arrays, so that boards of 65536 x 65536 cells and more can be played
+ * from a memory-mapped file: memory use is then bounded by the page cache rather
+ * than by the heap, and the board can be closed and reopened at once.
+ *
+ * The store starts with a header, followed by one byte per cell in row-major order
+ * encoded as in PackedBoard (color ordinal, plus the high bit iff flooded):
+ *
+ *   0   magic
+ *   8   size
+ *   16  number of flooded cells
+ *   24  number of moves played
+ *   32  per color, the number of edges between the flooded region and outside
+ *       cells of that color (5 longs), which suggest() votes with
+ *
+ * Flooding is a scanline span fill, which walks the store row by row and keeps only
+ * span seeds (not cells) on its stack. Flood gives the same result as Board.flood1.
+ */
+
+public class LargeBoard implements AutoCloseable {
+    private static final long MAGIC = 0x464C4F4F44495431L;   // "FLOODIT1"
+    private static final long HEADER = 128;
+    private static final long SIZE = 8, FLOODED = 16, MOVES = 24, VOTES = 32;
+    private static final WaterColor[] COLORS = WaterColor.values();
+
+    private final CellStore store;
+    private final int size;
+    private final long[] votes = new long[COLORS.length];
+
+    // span seeds still to fill, each packed as (y << 32) | x; reused by every flood
+    private long[] seeds = new long[64];
+
+    // the operations done by this board since it was opened, see getOpCounts()
+    private final OpCounts ops = new OpCounts();
+
+    /**
+     * Creates (or overwrites) the given file with a new board of the given size, with
+     * the same colors as new Board(size, seed), and floods the upper left corner.
+     */
+    public static LargeBoard create(Path file, int size, long seed)
+    {
+        return new LargeBoard(MappedCellStore.create(file, storeLength(size)), size, seed);
+    }
+
+    /**
+     * Returns the number of bytes a store needs to hold a board of the given size.
+     */
+    public static long storeLength(int size)
+    {
+        return HEADER + (long) size * size;
+    }
+
+    /**
+     * Reopens a board saved by an earlier create() and play.
+     */
+    public static LargeBoard open(Path file)
+    {
+        return new LargeBoard(MappedCellStore.open(file));
+    }
+
+    /**
+     * Builds a new board of the given size in the given store, which must be large
+     * enough, with the same colors as new Board(size, seed), and floods the corner.
+     */
+    public LargeBoard(CellStore store, int size, long seed)
+    {
+        assert store.length() >= storeLength(size);
+        this.store = store;
+        this.size = size;
+        store.setLong(0, MAGIC);
+        store.setLong(SIZE, size);
+        store.setLong(FLOODED, 0);
+        store.setLong(MOVES, 0);
+        Random gen = new Random(seed);
+        long n = (long) size * size;
+        for (long i = 0; i < n; i++)
+        {
+            store.set(HEADER + i, (byte) WaterColor.pickOne(gen).ordinal());
+        }
+        // Nothing is flooded yet, so this fill floods the corner and its color.
+        fill(getColor(0, 0).ordinal());
+        store.setLong(MOVES, 0);
+    }
+
+    /**
+     * Reopens a board previously built in the given store.
+     */
+    public LargeBoard(CellStore store)
+    {
+        if (store.getLong(0) != MAGIC)
+        {
+            throw new IllegalArgumentException("Not a saved board");
+        }
+        this.store = store;
+        size = (int) store.getLong(SIZE);
+        for (int c = 0; c < votes.length; c++)
+        {
+            votes[c] = store.getLong(VOTES + 8L * c);
+        }
+    }
+
+    /**
+     * Returns the size of this board.
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the color of the cell at (x, y).
+     */
+    public WaterColor getColor(int x, int y)
+    {
+        return COLORS[cell(x, y) & PackedBoard.COLOR_MASK];
+    }
+
+    /**
+     * Returns true iff the cell at (x, y) is inside the flooded region.
+     */
+    public boolean isFlooded(int x, int y)
+    {
+        return (cell(x, y) & PackedBoard.FLOODED) != 0;
+    }
+
+    /**
+     * Returns the color of the flooded region.
+     */
+    public WaterColor getRegionColor()
+    {
+        return getColor(0, 0);
+    }
+
+    /**
+     * Returns the number of cells inside the flooded region.
+     */
+    public long getFloodedCount()
+    {
+        return store.getLong(FLOODED);
+    }
+
+    /**
+     * Returns the number of moves played on this board.
+     */
+    public long getMoves()
+    {
+        return store.getLong(MOVES);
+    }
+
+    /**
+     * Returns true iff there is no cell left outside the flooded region.
+     */
+    public boolean fullyFlooded()
+    {
+        return getFloodedCount() == (long) size * size;
+    }
+
+    /**
+     * Recolors the flooded region with the given color and absorbs every cell of that
+     * color connected to it.
+     * @param WaterColor color
+     * @return long the number of newly flooded cells
+     */
+    public long flood(WaterColor color)
+    {
+        if (color == getRegionColor())
+        {
+            // A region is always maximal, so selecting its own color changes nothing.
+            return 0;
+        }
+        store.setLong(MOVES, getMoves() + 1);
+        return fill(color.ordinal());
+    }
+
+    /**
+     * Suggests the color sharing the most edges with the flooded region, as counted
+     * by the last flood. Takes constant time.
+     */
+    public WaterColor suggest()
+    {
+        int best = getRegionColor().ordinal();
+        for (int c = 0; c < votes.length; c++)
+        {
+            if (votes[c] > votes[best] || (votes[best] == 0 && votes[c] > 0))
+            {
+                best = c;
+            }
+        }
+        return COLORS[best];
+    }
+
+    /**
+     * Returns the operations done by this board since it was created or opened: every
+     * cell read from the store, by a flood or by getColor and isFlooded, counts as a
+     * visit.
+     */
+    public OpCounts getOpCounts()
+    {
+        return ops;
+    }
+
+    /**
+     * Scanline fill from the corner with color c. A cell needs filling if it is flooded
+     * but not yet recolored, or outside and of color c; filled cells are flooded with
+     * color c, so they are never filled twice. Every edge between a filled cell and an
+     * outside cell of another color is counted once, as a vote for that color.
+     */
+    private long fill(int c)
+    {
+        Arrays.fill(votes, 0);
+        long absorbed = 0;
+        int top = 0;
+        seeds[top++] = 0;
+        ops.pushes++;
+        while (top > 0)
+        {
+            long seed = seeds[--top];
+            int y = (int) (seed >>> 32);
+            int x = (int) seed;
+            if (!fillable(cell(x, y), c))
+            {
+                continue;
+            }
+            int lx = x;
+            while (lx > 0 && fillable(cell(lx - 1, y), c))
+            {
+                lx--;
+            }
+            int rx = x;
+            while (rx < size - 1 && fillable(cell(rx + 1, y), c))
+            {
+                rx++;
+            }
+
+            long row = HEADER + (long) y * size;
+            ops.visits += rx - lx + 1;
+            for (int i = lx; i <= rx; i++)
+            {
+                if ((store.get(row + i) & PackedBoard.FLOODED) == 0)
+                {
+                    absorbed++;
+                }
+                store.set(row + i, (byte) (PackedBoard.FLOODED | c));
+            }
+            if (lx > 0)
+            {
+                vote(cell(lx - 1, y));
+            }
+            if (rx < size - 1)
+            {
+                vote(cell(rx + 1, y));
+            }
+
+            // Seed every run of fillable cells above and below the span.
+            for (int ny = y - 1; ny <= y + 1; ny += 2)
+            {
+                if (ny < 0 || ny >= size)
+                {
+                    continue;
+                }
+                boolean inRun = false;
+                for (int i = lx; i <= rx; i++)
+                {
+                    int cell = cell(i, ny);
+                    if (fillable(cell, c))
+                    {
+                        if (!inRun)
+                        {
+                            if (top == seeds.length)
+                            {
+                                seeds = Arrays.copyOf(seeds, 2 * top);
+                            }
+                            seeds[top++] = ((long) ny << 32) | i;
+                            ops.pushes++;
+                            inRun = true;
+                        }
+                    }
+                    else
+                    {
+                        inRun = false;
+                        vote(cell);
+                    }
+                }
+            }
+        }
+
+        store.setLong(FLOODED, getFloodedCount() + absorbed);
+        for (int i = 0; i < votes.length; i++)
+        {
+            store.setLong(VOTES + 8L * i, votes[i]);
+        }
+        return absorbed;
+    }
+
+    private static boolean fillable(int cell, int c)
+    {
+        if ((cell & PackedBoard.FLOODED) != 0)
+        {
+            return (cell & PackedBoard.COLOR_MASK) != c;
+        }
+        return cell == c;
+    }
+
+    /**
+     * Counts an edge from the region to the given cell, if the cell is outside.
+     */
+    private void vote(int cell)
+    {
+        if ((cell & PackedBoard.FLOODED) == 0)
+        {
+            votes[cell]++;
+        }
+    }
+
+    private int cell(int x, int y)
+    {
+        ops.visits++;
+        return store.get(HEADER + (long) y * size + x);
+    }
+
+    /**
+     * Returns a packed copy of this board, which must have fewer than 2^31 cells.
+     */
+    public PackedBoard toPackedBoard()
+    {
+        byte[] cells = new byte[Math.toIntExact((long) size * size)];
+        for (int i = 0; i < cells.length; i++)
+        {
+            cells[i] = store.get(HEADER + i);
+        }
+        return new PackedBoard(size, cells, (int) getFloodedCount());
+    }
+
+    /**
+     * Writes all changes through to the backing storage.
+     */
+    public void flush()
+    {
+        store.flush();
+    }
+
+    /**
+     * Flushes and releases the store.
+     */
+    public void close()
+    {
+        store.close();
+    }
+
+    /**
+     * Plays a large board from a file given on the command line (size, then path),
+     * following its own suggestions, and reports the time per move. The board can be
+     * reopened and played on later by giving the path alone.
+     */
+    public static void main(String... args)
+    {
+        LargeBoard board = args.length > 1
+                ? create(Path.of(args[1]), Integer.parseInt(args[0]), 0)
+                : open(Path.of(args[0]));
+        long startTime = System.nanoTime();
+        long moves = 0;
+        while (!board.fullyFlooded() && moves < 1000)
+        {
+            board.flood(board.suggest());
+            moves++;
+        }
+        long endTime = System.nanoTime();
+        System.out.printf("%d moves on a %d x %d board, %.3f ms per move, %d cells flooded%n",
+                moves, board.getSize(), board.getSize(), (endTime - startTime) / 1e6 / Math.max(1, moves), board.getFloodedCount());
+        board.close();
+    }
+}
@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A CellStore backed by a memory-mapped file. The file is mapped in chunks of 1 GiB,
+ * since a single mapping cannot exceed 2 GiB, so stores may be far larger than the
+ * heap (or than physical memory): the operating system pages cells in and out, and
+ * whatever was written is in the file after flush() or close().
+ */
+
+public class MappedCellStore implements CellStore {
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private final long length;
+    private final MappedByteBuffer[] chunks;
+
+    /**
+     * Maps the given file read-write, creating it or growing it to the given length
+     * when it is shorter. Newly allocated bytes read as zero.
+     */
+    public static MappedCellStore create(Path file, long length)
+    {
+        return new MappedCellStore(file, length, true);
+    }
+
+    /**
+     * Maps the whole of an existing file read-write.
+     */
+    public static MappedCellStore open(Path file)
+    {
+        return new MappedCellStore(file, -1, false);
+    }
+
+    private MappedCellStore(Path file, long length, boolean create)
+    {
+        try (FileChannel channel = create
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            if (length < 0)
+            {
+                length = channel.size();
+            }
+            else if (channel.size() < length)
+            {
+                // Writing the last byte extends the file sparsely.
+                channel.write(java.nio.ByteBuffer.wrap(new byte[1]), length - 1);
+            }
+            this.length = length;
+            chunks = new MappedByteBuffer[(int) ((length + CHUNK_MASK) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++)
+            {
+                long start = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(CHUNK_MASK + 1, length - start));
+            }
+            // The mappings stay valid after the channel is closed.
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Unable to map " + file, e);
+        }
+    }
+
+    public long length()
+    {
+        return length;
+    }
+
+    public byte get(long offset)
+    {
+        return chunks[(int) (offset >>> CHUNK_BITS)].get((int) (offset & CHUNK_MASK));
+    }
+
+    public void set(long offset, byte value)
+    {
+        chunks[(int) (offset >>> CHUNK_BITS)].put((int) (offset & CHUNK_MASK), value);
+    }
+
+    public long getLong(long offset)
+    {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    public void setLong(long offset, long value)
+    {
+        chunks[(int) (offset >>> CHUNK_BITS)].putLong((int) (offset & CHUNK_MASK), value);
+    }
+
+    public void flush()
+    {
+        for (MappedByteBuffer chunk : chunks)
+        {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Flushes this store. The mappings themselves are released by the garbage
+     * collector once the store is unreachable.
+     */
+    public void close()
+    {
+        flush();
+    }
+}
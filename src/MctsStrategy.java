@@ -0,0 +1,315 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MctsStrategy suggests moves by Monte Carlo Tree Search within a time budget.
+ *
+ * Every worker repeatedly walks down a shared tree of moves by UCT, expands the
+ * node it reaches, plays the rest of the game out with a fast greedy policy on
+ * its own packed copy of the board, and feeds the result back up the path. The
+ * tree is lock-free: statistics are atomic counters and children are installed
+ * by compare-and-set. A worker passing through a node adds a virtual loss to it
+ * until it backs up, so concurrent workers spread over different branches.
+ *
+ * When the budget runs out, the most visited move at the root is suggested, so
+ * a longer budget (or more cores) simply means a better informed suggestion.
+ */
+
+public class MctsStrategy implements SuggestStrategy {
+    private static final WaterColor[] COLORS = WaterColor.values();
+    private static final double EXPLORATION = Math.sqrt(2);
+    private static final double EPSILON = 0.1;   // chance of a random move during a rollout
+
+    private final long budgetMillis;
+    private final int workers;
+
+    /**
+     * Constructs a strategy thinking for the given number of milliseconds per move,
+     * with one worker per available core.
+     */
+    public MctsStrategy(long budgetMillis)
+    {
+        this(budgetMillis, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a strategy thinking for the given number of milliseconds per move
+     * with the given number of workers.
+     */
+    public MctsStrategy(long budgetMillis, int workers)
+    {
+        assert workers > 0;
+        this.budgetMillis = budgetMillis;
+        this.workers = workers;
+    }
+
+    public String getName()
+    {
+        return "mcts-" + budgetMillis + "ms";
+    }
+
+    public int getDepth()
+    {
+        return 0;
+    }
+
+    public WaterColor suggest(Board board)
+    {
+        return suggest(board, budgetMillis);
+    }
+
+    public boolean forksWorkers()
+    {
+        return workers > 1;
+    }
+
+    /**
+     * Searches for the given number of milliseconds and returns the best move so far.
+     */
+    public WaterColor suggest(Board board, long budgetMillis)
+    {
+        PackedBoard start = board.pack();
+        if (start.fullyFlooded())
+        {
+            return start.getRegionColor();
+        }
+        Search search = new Search(start, System.nanoTime() + budgetMillis * 1_000_000);
+
+        List<Future<?>> running = new ArrayList<>(workers);
+        for (int i = 1; i < workers; i++)
+        {
+            running.add(ForkJoinPool.commonPool().submit(search::run));
+        }
+        search.run();
+        for (Future<?> worker : running)
+        {
+            try
+            {
+                worker.get();
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException("MCTS worker failed", e);
+            }
+        }
+        return search.bestMove();
+    }
+
+    /**
+     * A node of the search tree: the position reached by playing move from its
+     * parent's position.
+     */
+    private static final class Node {
+        final Node parent;
+        final WaterColor move;
+        final AtomicInteger visits = new AtomicInteger();
+        final AtomicInteger virtualLoss = new AtomicInteger();
+        final AtomicLong reward = new AtomicLong();   // sum of rewards, in millionths
+        final AtomicReferenceArray<Node> children = new AtomicReferenceArray<>(COLORS.length);
+        volatile boolean expanded, terminal;
+
+        Node(Node parent, WaterColor move)
+        {
+            this.parent = parent;
+            this.move = move;
+        }
+
+        /**
+         * Returns the UCT score of this node seen from a parent visited n times,
+         * counting every virtual loss as a visit without reward.
+         */
+        double score(double logParent)
+        {
+            int n = visits.get() + virtualLoss.get();
+            if (n == 0)
+            {
+                return Double.POSITIVE_INFINITY;
+            }
+            return reward.get() / 1e6 / n + EXPLORATION * Math.sqrt(logParent / n);
+        }
+    }
+
+    /**
+     * One search, shared by all workers.
+     */
+    private static final class Search {
+        final PackedBoard start;
+        final long deadline;
+        final int horizon;   // rollouts longer than this score zero
+        final Node root = new Node(null, null);
+
+        Search(PackedBoard start, long deadline)
+        {
+            this.start = start;
+            this.deadline = deadline;
+            horizon = 2 * Game.getStepLimit(start.getSize()) + start.getSize();
+        }
+
+        /**
+         * Runs iterations until the deadline (always at least one).
+         */
+        void run()
+        {
+            PackedBoard board = new PackedBoard(start);
+            int[] counts = new int[COLORS.length];
+            List<Node> path = new ArrayList<>();
+            do
+            {
+                iterate(board, counts, path);
+            }
+            while (System.nanoTime() < deadline);
+        }
+
+        private void iterate(PackedBoard board, int[] counts, List<Node> path)
+        {
+            board.copyFrom(start);
+            path.clear();
+            Node node = root;
+            path.add(node);
+            node.virtualLoss.incrementAndGet();
+            int moves = 0;
+
+            // Selection: follow UCT through expanded nodes.
+            while (node.expanded && !node.terminal)
+            {
+                Node child = select(node);
+                if (child == null)
+                {
+                    break;
+                }
+                board.flood(child.move);
+                moves++;
+                node = child;
+                path.add(node);
+                node.virtualLoss.incrementAndGet();
+            }
+
+            // Expansion: add every move that absorbs something, then step into one.
+            if (!node.terminal && !node.expanded)
+            {
+                if (board.fullyFlooded())
+                {
+                    node.terminal = true;
+                }
+                else
+                {
+                    board.countFrontier(counts);
+                    for (int c = 0; c < COLORS.length; c++)
+                    {
+                        if (counts[c] > 0)
+                        {
+                            node.children.compareAndSet(c, null, new Node(node, COLORS[c]));
+                        }
+                    }
+                    node.expanded = true;
+                    Node child = select(node);
+                    board.flood(child.move);
+                    moves++;
+                    node = child;
+                    path.add(node);
+                    node.virtualLoss.incrementAndGet();
+                }
+            }
+
+            // Simulation: finish the game greedily.
+            moves += rollout(board, counts, moves);
+            double value = moves >= horizon ? 0 : 1 - (double) moves / horizon;
+
+            // Backpropagation.
+            long delta = Math.round(value * 1e6);
+            for (Node n : path)
+            {
+                n.visits.incrementAndGet();
+                n.reward.addAndGet(delta);
+                n.virtualLoss.decrementAndGet();
+            }
+        }
+
+        /**
+         * Returns the child of node with the best UCT score, or null if it has none.
+         */
+        private Node select(Node node)
+        {
+            double logParent = Math.log(Math.max(1, node.visits.get() + node.virtualLoss.get()));
+            Node best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int c = 0; c < COLORS.length; c++)
+            {
+                Node child = node.children.get(c);
+                if (child != null)
+                {
+                    double score = child.score(logParent);
+                    if (score > bestScore)
+                    {
+                        bestScore = score;
+                        best = child;
+                    }
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Plays moves on board until it is flooded (or the horizon is reached), each
+         * time picking the color touching the most cells, or with a small chance a
+         * random touching color. Returns the number of moves played.
+         */
+        private int rollout(PackedBoard board, int[] counts, int played)
+        {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int moves = 0;
+            while (!board.fullyFlooded() && played + moves < horizon)
+            {
+                board.countFrontier(counts);
+                int pick = -1;
+                if (random.nextDouble() < EPSILON)
+                {
+                    int seen = 0;
+                    for (int c = 0; c < counts.length; c++)
+                    {
+                        if (counts[c] > 0 && random.nextInt(++seen) == 0)
+                        {
+                            pick = c;
+                        }
+                    }
+                }
+                else
+                {
+                    for (int c = 0; c < counts.length; c++)
+                    {
+                        if (counts[c] > 0 && (pick < 0 || counts[c] > counts[pick]))
+                        {
+                            pick = c;
+                        }
+                    }
+                }
+                board.flood(COLORS[pick]);
+                moves++;
+            }
+            return moves;
+        }
+
+        /**
+         * Returns the most visited move at the root.
+         */
+        WaterColor bestMove()
+        {
+            Node best = null;
+            for (int c = 0; c < COLORS.length; c++)
+            {
+                Node child = root.children.get(c);
+                if (child != null && (best == null || child.visits.get() > best.visits.get()))
+                {
+                    best = child;
+                }
+            }
+            return best == null ? start.getRegionColor() : best.move;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A MultiRegionBoard holds several flooded regions on one board, each grown from
+ * its own seed cell by its own moves: two players starting in opposite corners,
+ * or hundreds of regions for simulation workloads.
+ *
+ * Every cell has an owner, the index of the region it belongs to or -1. A region
+ * only ever absorbs cells nobody owns, so the first region to reach a cell keeps
+ * it and regions that meet stop at each other. The cells of a region take its
+ * color, which is kept once per region rather than per cell.
+ *
+ * As in Board, each region keeps its frontier (the unowned cells next to it)
+ * bucketed by color, and a move drains the bucket of the new color. The buckets
+ * are lazy: a cell is added once for every cell of the region it borders, and
+ * stays even after another region takes it, until it is drained or the buckets
+ * are compacted by countFrontier(). Every entry is added by a claim and removed
+ * at most once, so a move costs time in the number of cells it absorbs and
+ * entries it drains, however many regions there are and however large they grow.
+ * Nothing scans the board after construction.
+ */
+
+public class MultiRegionBoard {
+    private static final WaterColor[] COLORS = WaterColor.values();
+
+    private final int size;
+    private final byte[] colors;    // the dealt color ordinals
+    private final int[] owner;      // the region of each cell, or -1
+    private final List<Region> regions = new ArrayList<>();
+    private int ownedCount;
+
+    // scratch marks for countFrontier(), see the stamp
+    private int[] marks;
+    private int stamp;
+
+    // the operations done by all moves so far, see getOpCounts()
+    private final OpCounts ops = new OpCounts();
+
+    /**
+     * One flooded region: its color, its number of cells, and its frontier.
+     * frontier[c] holds cell indices in its first frontierSizes[c] slots; each is
+     * a cell of color c that was unowned when put there.
+     */
+    private static final class Region {
+        int color;
+        int size;
+        int[][] frontier = new int[COLORS.length][4];
+        int[] frontierSizes = new int[COLORS.length];
+    }
+
+    /**
+     * Constructs a board of the given size with the same colors as
+     * new Board(size, seed), and no regions yet.
+     */
+    public MultiRegionBoard(int size, long seed)
+    {
+        this.size = size;
+        colors = new byte[size * size];
+        owner = new int[size * size];
+        Arrays.fill(owner, -1);
+        Random gen = new Random(seed);
+        for (int i = 0; i < colors.length; i++)
+        {
+            colors[i] = (byte) WaterColor.pickOne(gen).ordinal();
+        }
+    }
+
+    /**
+     * Starts a new region at the given unowned cell and floods it with the color
+     * of that cell, as a Board floods its corner. Returns the index of the region.
+     */
+    public int addRegion(Coord seed)
+    {
+        int i = seed.getY() * size + seed.getX();
+        if (owner[i] >= 0)
+        {
+            throw new IllegalArgumentException(seed + " already belongs to region " + owner[i]);
+        }
+        int r = regions.size();
+        Region region = new Region();
+        regions.add(region);
+        region.color = colors[i];
+        claim(r, region, i);
+        int absorbed = 1 + drain(r, region);
+        region.size += absorbed;
+        ownedCount += absorbed;
+        return r;
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of regions added so far.
+     */
+    public int getRegionCount()
+    {
+        return regions.size();
+    }
+
+    /**
+     * Returns the index of the region the cell at (x, y) belongs to, or -1.
+     */
+    public int getOwner(int x, int y)
+    {
+        return owner[y * size + x];
+    }
+
+    /**
+     * Returns the color of the cell at (x, y): that of its region if it has one.
+     */
+    public WaterColor getColor(int x, int y)
+    {
+        int i = y * size + x;
+        return COLORS[owner[i] < 0 ? colors[i] : regions.get(owner[i]).color];
+    }
+
+    public WaterColor getRegionColor(int region)
+    {
+        return COLORS[regions.get(region).color];
+    }
+
+    /**
+     * Returns the number of cells of the given region.
+     */
+    public int getRegionSize(int region)
+    {
+        return regions.get(region).size;
+    }
+
+    /**
+     * Returns the number of cells that belong to some region.
+     */
+    public int getOwnedCount()
+    {
+        return ownedCount;
+    }
+
+    /**
+     * Returns true iff every cell belongs to some region.
+     */
+    public boolean fullyOwned()
+    {
+        return ownedCount == colors.length;
+    }
+
+    /**
+     * Recolors the given region with the given color and absorbs the unowned cells
+     * of that color connected to it, leaving other regions alone. Returns the
+     * number of cells absorbed. Selecting the region's own color changes nothing.
+     */
+    public int flood(int region, WaterColor color)
+    {
+        Region that = regions.get(region);
+        if (that.color == color.ordinal())
+        {
+            return 0;
+        }
+        that.color = color.ordinal();
+        int absorbed = drain(region, that);
+        that.size += absorbed;
+        ownedCount += absorbed;
+        return absorbed;
+    }
+
+    /**
+     * Drains the frontier bucket of the region's color: each entry still unowned is
+     * claimed, and claiming a cell puts its unowned neighbors on the frontier, so
+     * neighbors of the region's color land in the very bucket being drained.
+     * Returns the number of cells claimed.
+     */
+    private int drain(int r, Region region)
+    {
+        int c = region.color;
+        int absorbed = 0;
+        while (region.frontierSizes[c] > 0)
+        {
+            int i = region.frontier[c][--region.frontierSizes[c]];
+            ops.visits++;
+            if (owner[i] < 0)
+            {
+                claim(r, region, i);
+                absorbed++;
+            }
+        }
+        return absorbed;
+    }
+
+    /**
+     * Gives cell i to region r and puts its unowned neighbors on the frontier of
+     * the region.
+     */
+    private void claim(int r, Region region, int i)
+    {
+        owner[i] = r;
+        int x = i % size;
+        for (int k = 0; k < 4; k++)
+        {
+            int j;
+            if (k == 0) { if (i < size) continue; j = i - size; }
+            else if (k == 1) { if (x == size - 1) continue; j = i + 1; }
+            else if (k == 2) { j = i + size; if (j >= owner.length) continue; }
+            else { if (x == 0) continue; j = i - 1; }
+
+            ops.visits++;
+            if (owner[j] >= 0)
+            {
+                continue;
+            }
+            int bucket = colors[j];
+            if (region.frontierSizes[bucket] == region.frontier[bucket].length)
+            {
+                region.frontier[bucket] = Arrays.copyOf(region.frontier[bucket], 2 * region.frontierSizes[bucket]);
+            }
+            region.frontier[bucket][region.frontierSizes[bucket]++] = j;
+            ops.pushes++;
+        }
+    }
+
+    /**
+     * Fills counts (indexed by WaterColor.ordinal()) with the number of unowned
+     * cells of each color next to the given region, i.e. how many cells each move
+     * would absorb directly. Compacts the frontier of the region on the way, so
+     * takes time in the number of entries it had.
+     */
+    public void countFrontier(int region, int[] counts)
+    {
+        Region that = regions.get(region);
+        if (marks == null)
+        {
+            marks = new int[owner.length];
+        }
+        if (++stamp == 0)
+        {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+        for (int c = 0; c < COLORS.length; c++)
+        {
+            // Keep the entries still unowned, each once.
+            int[] bucket = that.frontier[c];
+            int kept = 0;
+            for (int k = 0; k < that.frontierSizes[c]; k++)
+            {
+                int i = bucket[k];
+                if (owner[i] < 0 && marks[i] != stamp)
+                {
+                    marks[i] = stamp;
+                    bucket[kept++] = i;
+                }
+            }
+            that.frontierSizes[c] = kept;
+            counts[c] = kept;
+        }
+    }
+
+    /**
+     * Returns the color with the most unowned cells next to the given region, or
+     * the region's own color if no other color touches it.
+     */
+    public WaterColor suggest(int region, int[] counts)
+    {
+        countFrontier(region, counts);
+        int best = regions.get(region).color;
+        for (int c = 0; c < counts.length; c++)
+        {
+            if (counts[c] > counts[best])
+            {
+                best = c;
+            }
+        }
+        return COLORS[best];
+    }
+
+    /**
+     * Returns a packed copy of this board as the given region sees it: its cells
+     * flooded, all others outside with their current colors.
+     */
+    public PackedBoard toPackedBoard(int region)
+    {
+        byte[] cells = new byte[colors.length];
+        for (int i = 0; i < cells.length; i++)
+        {
+            int r = owner[i];
+            cells[i] = (byte) (r < 0 ? colors[i] : regions.get(r).color | (r == region ? PackedBoard.FLOODED : 0));
+        }
+        return new PackedBoard(size, cells, regions.get(region).size);
+    }
+
+    /**
+     * Returns the operations done by all moves so far, regions added included.
+     * Callers may clear them to count a stretch of play on its own.
+     */
+    public OpCounts getOpCounts()
+    {
+        return ops;
+    }
+
+    public String toString()
+    {
+        StringBuilder ans = new StringBuilder();
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                int r = owner[y * size + x];
+                ans.append(r < 0 ? "." : Integer.toString(r % 10));
+            }
+            ans.append('\n');
+        }
+        return ans.toString();
+    }
+
+    /**
+     * Plays greedy moves for growing numbers of regions seeded at random on one
+     * large board, and reports the cost of a move. Arguments: size and moves per
+     * run (2048 and 20000 by default).
+     */
+    public static void main(String... args)
+    {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        System.out.printf("%8s %12s %14s %14s %12s%n", "regions", "us/move", "absorbed/move", "ops/move", "owned");
+        for (int count : new int[] { 1, 2, 16, 256, 1024 })
+        {
+            MultiRegionBoard board = new MultiRegionBoard(size, Constants.MAX_DIM);
+            Random gen = new Random(count);
+            for (int attempt = 0; board.getRegionCount() < count && attempt < 100 * count; attempt++)
+            {
+                int x = gen.nextInt(size), y = gen.nextInt(size);
+                if (board.getOwner(x, y) < 0)
+                {
+                    board.addRegion(new Coord(x, y));
+                }
+            }
+            board.getOpCounts().clear();
+            int[] counts = new int[COLORS.length];
+            long absorbed = 0, elapsedNanos = 0;
+            int played = 0;
+            for (; played < moves && !board.fullyOwned(); played++)
+            {
+                int r = played % board.getRegionCount();
+                WaterColor color = board.suggest(r, counts);
+                long startTime = System.nanoTime();
+                absorbed += board.flood(r, color);
+                elapsedNanos += System.nanoTime() - startTime;
+            }
+            System.out.printf("%8d %12.2f %14.1f %14.1f %11.1f%%%n", board.getRegionCount(),
+                    elapsedNanos / 1e3 / played, (double) absorbed / played,
+                    (double) board.getOpCounts().getTotal() / played, 100.0 * board.getOwnedCount() / (size * size));
+        }
+    }
+}
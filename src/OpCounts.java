@@ -0,0 +1,61 @@
+/**
+ * OpCounts tallies the basic operations a flood engine performs: cells visited (a
+ * cell's state read to decide what to do with it), map operations (lookups and
+ * updates of a CoordMap) and pushes (onto a queue, stack or perimeter bucket).
+ *
+ * Unlike timings, these counts are exact and repeatable for a given board and move
+ * sequence, so tests can assert how they grow with the board size and catch an
+ * algorithm that has turned quadratic, whatever machine they run on. Counting is a
+ * plain field increment, cheap enough to stay on in production.
+ *
+ * Like the boards that own them, counts are not thread-safe.
+ */
+
+public class OpCounts {
+    long visits, mapOps, pushes;
+
+    /**
+     * Returns the number of cells visited.
+     */
+    public long getVisits()
+    {
+        return visits;
+    }
+
+    /**
+     * Returns the number of map lookups and updates.
+     */
+    public long getMapOps()
+    {
+        return mapOps;
+    }
+
+    /**
+     * Returns the number of pushes onto queues, stacks and buckets.
+     */
+    public long getPushes()
+    {
+        return pushes;
+    }
+
+    /**
+     * Returns the sum of all counts.
+     */
+    public long getTotal()
+    {
+        return visits + mapOps + pushes;
+    }
+
+    /**
+     * Sets all counts back to zero.
+     */
+    public void clear()
+    {
+        visits = mapOps = pushes = 0;
+    }
+
+    public String toString()
+    {
+        return "visits=" + visits + " mapOps=" + mapOps + " pushes=" + pushes;
+    }
+}
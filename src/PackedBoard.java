@@ -0,0 +1,770 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A PackedBoard is a compact version of Board meant for very large boards and for
+ * cheap copies. Every cell is one byte: the low bits hold the ordinal of its
+ * WaterColor and the high bit is set iff the cell is inside the flooded region. No
+ * Coord or Tile objects are involved.
+ *
+ * Cells are stored in row-major order unless another CellLayout is asked for,
+ * which keeps neighbors closer together on very large boards. Padding cells of a
+ * layout have the color PADDING, which no move can select, so fills stop at them.
+ * Boards with the same colors and flooded region are equal whatever their layouts.
+ *
+ * Flooding gives exactly the same result as Board.flood1. Boards whose size is at
+ * least the parallel threshold are flooded in horizontal stripes on the fork-join
+ * pool; smaller boards use a sequential fill.
+ */
+
+public class PackedBoard {
+    static final int FLOODED = 0x80;
+    static final int COLOR_MASK = 0x7F;
+    static final int PADDING = COLOR_MASK;
+
+    private static final WaterColor[] COLORS = WaterColor.values();
+
+    // boards at least this wide are flooded in parallel stripes
+    private static volatile int parallelThreshold = Constants.PARALLEL_FLOOD_SIZE;
+
+    private final int size;
+    private final byte[] cells;
+    private int floodedCount;
+
+    // the cell of (x, y) is cells[columns[x] + rows[y]]; the tables are shared by copies
+    private final CellLayout layout;
+    private final int[] columns, rows;
+
+    // scratch space, allocated on first use and reused by every later flood
+    private int[] stack = new int[64];
+    private int[] parent;
+    private int[] mark;
+    private int stamp;
+
+    // the operations done by all floods of this board so far, see getOpCounts()
+    private final OpCounts ops = new OpCounts();
+
+    /**
+     * Constructs a packed board of the given size with the same colors as
+     * new Board(size, seed), and floods the upper left corner.
+     */
+    public PackedBoard(int size, long seed)
+    {
+        this(size, seed, CellLayout.ROW_MAJOR);
+    }
+
+    /**
+     * Constructs a packed board of the given size and layout with the same colors
+     * as new Board(size, seed), and floods the upper left corner.
+     */
+    public PackedBoard(int size, long seed, CellLayout layout)
+    {
+        this(size, layout);
+        Random gen = new Random(seed);
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                cells[columns[x] + rows[y]] = (byte) WaterColor.pickOne(gen).ordinal();
+            }
+        }
+        cells[0] |= FLOODED;
+        floodedCount = 1;
+        floodSequential(getRegionColor());
+    }
+
+    /**
+     * Constructs a packed copy of the current state of the given board.
+     */
+    public PackedBoard(Board board)
+    {
+        this(board.getSize(), CellLayout.ROW_MAJOR);
+        for (int y = 0; y < size; y++)
+            for (int x = 0; x < size; x++) {
+                Coord coord = new Coord(x, y);
+                int cell = board.get(coord).getColor().ordinal();
+                if (board.isFlooded(coord))
+                {
+                    cell |= FLOODED;
+                    floodedCount++;
+                }
+                cells[columns[x] + rows[y]] = (byte) cell;
+            }
+    }
+
+    /**
+     * Constructs a copy of the given packed board.
+     */
+    public PackedBoard(PackedBoard that)
+    {
+        size = that.size;
+        cells = that.cells.clone();
+        floodedCount = that.floodedCount;
+        layout = that.layout;
+        columns = that.columns;
+        rows = that.rows;
+    }
+
+    /**
+     * Constructs a copy of the given packed board in the given layout.
+     */
+    public PackedBoard(PackedBoard that, CellLayout layout)
+    {
+        this(that.size, layout);
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                cells[columns[x] + rows[y]] = that.cells[that.columns[x] + that.rows[y]];
+            }
+        }
+        floodedCount = that.floodedCount;
+    }
+
+    /**
+     * Constructs a packed board over the given cells in row-major order, which it
+     * takes ownership of.
+     */
+    PackedBoard(int size, byte[] cells, int floodedCount)
+    {
+        assert cells.length == size * size;
+        this.size = size;
+        this.cells = cells;
+        this.floodedCount = floodedCount;
+        layout = CellLayout.ROW_MAJOR;
+        columns = layout.columnOffsets(size);
+        rows = layout.rowOffsets(size);
+    }
+
+    /**
+     * Constructs a board of the given size and layout whose cells are all blue and
+     * outside, apart from the padding.
+     */
+    private PackedBoard(int size, CellLayout layout)
+    {
+        this.size = size;
+        this.layout = layout;
+        columns = layout.columnOffsets(size);
+        rows = layout.rowOffsets(size);
+        cells = new byte[layout.length(size)];
+        if (cells.length > size * size)
+        {
+            Arrays.fill(cells, (byte) PADDING);
+            for (int y = 0; y < size; y++)
+            {
+                for (int x = 0; x < size; x++)
+                {
+                    cells[columns[x] + rows[y]] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Overwrites this board with the state of the given board of the same size,
+     * without allocating.
+     */
+    public void copyFrom(PackedBoard that)
+    {
+        assert size == that.size && layout == that.layout;
+        System.arraycopy(that.cells, 0, cells, 0, cells.length);
+        floodedCount = that.floodedCount;
+    }
+
+    /**
+     * Returns the size of this board.
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the layout of the cells of this board.
+     */
+    public CellLayout getLayout()
+    {
+        return layout;
+    }
+
+    /**
+     * Returns the color of the cell at (x, y).
+     */
+    public WaterColor getColor(int x, int y)
+    {
+        return COLORS[cells[columns[x] + rows[y]] & COLOR_MASK];
+    }
+
+    /**
+     * Returns true iff the cell at (x, y) is inside the flooded region.
+     */
+    public boolean isFlooded(int x, int y)
+    {
+        return (cells[columns[x] + rows[y]] & FLOODED) != 0;
+    }
+
+    /**
+     * Returns the color of the flooded region.
+     */
+    public WaterColor getRegionColor()
+    {
+        return COLORS[cells[0] & COLOR_MASK];
+    }
+
+    /**
+     * Returns the number of cells inside the flooded region.
+     */
+    public int getFloodedCount()
+    {
+        return floodedCount;
+    }
+
+    /**
+     * Returns true iff there is no cell left outside the flooded region.
+     */
+    public boolean fullyFlooded()
+    {
+        return floodedCount == size * size;
+    }
+
+    /**
+     * Returns the number of distinct colors among the cells outside the flooded
+     * region, a lower bound on the moves left, since every color must be selected
+     * at least once more. Takes time linear in the number of cells.
+     */
+    public int countOutsideColors()
+    {
+        int seen = 0;
+        for (byte cell : cells)
+        {
+            if ((cell & FLOODED) == 0)
+            {
+                seen |= 1 << cell;
+            }
+        }
+        // 1 << PADDING is none of the colors
+        return Integer.bitCount(seen & ((1 << COLORS.length) - 1));
+    }
+
+    /**
+     * Returns the size from which boards are flooded in parallel stripes.
+     */
+    public static int getParallelThreshold()
+    {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the size from which boards are flooded in parallel stripes.
+     */
+    public static void setParallelThreshold(int size)
+    {
+        parallelThreshold = size;
+    }
+
+    /**
+     * Recolors the flooded region with the given color and absorbs every cell of
+     * that color connected to it, using the stripe-parallel fill on boards of at
+     * least the parallel threshold (given more than one core) and the sequential
+     * fill otherwise.
+     * @param WaterColor color
+     * @return int the number of newly flooded cells
+     */
+    public int flood(WaterColor color)
+    {
+        if (size >= parallelThreshold && ForkJoinPool.getCommonPoolParallelism() > 1)
+        {
+            return floodParallel(color);
+        }
+        return floodSequential(color);
+    }
+
+    /**
+     * Depth-first fill from the corner. A flooded cell that already has the new
+     * color counts as visited, which is sound because the region never holds a
+     * cell of the new color before it is recolored (a region is always maximal,
+     * so selecting its own color changes nothing). The stack holds cell indices,
+     * whose neighbors are found by index arithmetic in every layout.
+     */
+    public int floodSequential(WaterColor color)
+    {
+        int c = color.ordinal();
+        if ((cells[0] & COLOR_MASK) == c && floodedCount > 1)
+        {
+            return 0;
+        }
+        if (layout == CellLayout.ROW_MAJOR)
+        {
+            return floodRowMajor(c);
+        }
+        int tileRow = CellLayout.tileRowLength(size);
+        int absorbed = 0;
+        int top = 0;
+        cells[0] = (byte) (FLOODED | c);
+        stack[top++] = 0;
+        long visits = 0;
+        while (top > 0)
+        {
+            int i = stack[--top];
+            for (int k = 0; k < 4; k++)
+            {
+                int j = neighbor(i, k, tileRow);
+                if (j < 0) continue;
+
+                visits++;
+                int cell = cells[j];
+                if ((cell & FLOODED) != 0)
+                {
+                    if ((cell & COLOR_MASK) == c)
+                    {
+                        continue;
+                    }
+                }
+                else if (cell == c)
+                {
+                    absorbed++;
+                }
+                else
+                {
+                    continue;
+                }
+                cells[j] = (byte) (FLOODED | c);
+                if (top == stack.length)
+                {
+                    stack = Arrays.copyOf(stack, 2 * top);
+                }
+                stack[top++] = j;
+            }
+        }
+        // every cell of the new region was pushed exactly once
+        ops.visits += visits;
+        ops.pushes += floodedCount + absorbed;
+        floodedCount += absorbed;
+        return absorbed;
+    }
+
+    /**
+     * floodSequential in row-major order, where the neighbors of a cell are found
+     * from its index alone; the stack holds cell indices.
+     */
+    private int floodRowMajor(int c)
+    {
+        int absorbed = 0;
+        int top = 0;
+        cells[0] = (byte) (FLOODED | c);
+        stack[top++] = 0;
+        long visits = 0;
+        while (top > 0)
+        {
+            int i = stack[--top];
+            int x = i % size;
+            for (int k = 0; k < 4; k++)
+            {
+                int j;
+                if (k == 0) { if (i < size) continue; j = i - size; }
+                else if (k == 1) { if (x == size - 1) continue; j = i + 1; }
+                else if (k == 2) { j = i + size; if (j >= cells.length) continue; }
+                else { if (x == 0) continue; j = i - 1; }
+
+                visits++;
+                int cell = cells[j];
+                if ((cell & FLOODED) != 0)
+                {
+                    if ((cell & COLOR_MASK) == c)
+                    {
+                        continue;
+                    }
+                }
+                else if (cell == c)
+                {
+                    absorbed++;
+                }
+                else
+                {
+                    continue;
+                }
+                cells[j] = (byte) (FLOODED | c);
+                if (top == stack.length)
+                {
+                    stack = Arrays.copyOf(stack, 2 * top);
+                }
+                stack[top++] = j;
+            }
+        }
+        // every cell of the new region was pushed exactly once
+        ops.visits += visits;
+        ops.pushes += floodedCount + absorbed;
+        floodedCount += absorbed;
+        return absorbed;
+    }
+
+    /**
+     * Stripe-parallel fill. A cell is passable if it is flooded or has the new
+     * color; the new region is the passable component of the corner.
+     *
+     * 1. Every stripe of rows labels its passable components on its own, with a
+     *    union-find forest over row-major indices (whatever the layout of the
+     *    cells) in which roots are the smallest index.
+     * 2. The stripe boundaries are reconciled by uniting vertically adjacent
+     *    passable cells across each boundary, which merges the local components
+     *    into global ones in a single pass.
+     * 3. Every stripe then floods its passable cells whose root is the corner.
+     */
+    public int floodParallel(WaterColor color)
+    {
+        int c = color.ordinal();
+        if ((cells[0] & COLOR_MASK) == c && floodedCount > 1)
+        {
+            return 0;
+        }
+        if (parent == null)
+        {
+            parent = new int[size * size];
+        }
+        int rowsPerStripe = Math.max(16, size / (4 * ForkJoinPool.getCommonPoolParallelism()));
+        int stripes = (size + rowsPerStripe - 1) / rowsPerStripe;
+
+        // 1. label each stripe locally
+        IntStream.range(0, stripes).parallel().forEach(s -> {
+            int first = s * rowsPerStripe;
+            int last = Math.min(size, first + rowsPerStripe);
+            for (int y = first; y < last; y++)
+            {
+                for (int x = 0, i = y * size; x < size; x++, i++)
+                {
+                    if (!passable(cells[columns[x] + rows[y]], c))
+                    {
+                        continue;
+                    }
+                    parent[i] = i;
+                    if (x > 0 && passable(cells[columns[x - 1] + rows[y]], c))
+                    {
+                        union(i - 1, i);
+                    }
+                    if (y > first && passable(cells[columns[x] + rows[y - 1]], c))
+                    {
+                        union(i - size, i);
+                    }
+                }
+            }
+        });
+
+        // 2. reconcile the stripe boundaries
+        for (int s = 1; s < stripes; s++)
+        {
+            int y = s * rowsPerStripe;
+            for (int x = 0, i = y * size; x < size; x++, i++)
+            {
+                if (passable(cells[columns[x] + rows[y]], c) && passable(cells[columns[x] + rows[y - 1]], c))
+                {
+                    union(i - size, i);
+                }
+            }
+        }
+
+        // 3. flood whatever is connected to the corner
+        int[] absorbed = new int[stripes];
+        IntStream.range(0, stripes).parallel().forEach(s -> {
+            int first = s * rowsPerStripe;
+            int last = Math.min(size, first + rowsPerStripe);
+            int count = 0;
+            for (int y = first; y < last; y++)
+            {
+                for (int x = 0, i = y * size; x < size; x++, i++)
+                {
+                    int j = columns[x] + rows[y];
+                    int cell = cells[j];
+                    if (passable(cell, c) && find(i, first * size, last * size) == 0)
+                    {
+                        if ((cell & FLOODED) == 0)
+                        {
+                            count++;
+                        }
+                        cells[j] = (byte) (FLOODED | c);
+                    }
+                }
+            }
+            absorbed[s] = count;
+        });
+
+        int total = 0;
+        for (int count : absorbed)
+        {
+            total += count;
+        }
+        // two passes over all cells, plus the boundary rows; nothing is pushed
+        ops.visits += 2L * size * size + (long) (stripes - 1) * size;
+        floodedCount += total;
+        return total;
+    }
+
+    /**
+     * Returns the operations done by all floods of this board so far, counted on the
+     * calling thread even for parallel floods. Copies start from zero.
+     */
+    public OpCounts getOpCounts()
+    {
+        return ops;
+    }
+
+    /**
+     * Fills counts (indexed by WaterColor.ordinal()) with the number of outside
+     * cells of each color next to the flooded region, i.e. how many cells each
+     * move would absorb directly. Walks the region and its perimeter only.
+     */
+    public void countFrontier(int[] counts)
+    {
+        Arrays.fill(counts, 0);
+        if (mark == null)
+        {
+            mark = new int[cells.length];
+        }
+        if (++stamp == 0)
+        {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+        if (layout == CellLayout.ROW_MAJOR)
+        {
+            countFrontierRowMajor(counts);
+            return;
+        }
+        int tileRow = CellLayout.tileRowLength(size);
+        int top = 0;
+        mark[0] = stamp;
+        stack[top++] = 0;
+        while (top > 0)
+        {
+            int i = stack[--top];
+            for (int k = 0; k < 4; k++)
+            {
+                int j = neighbor(i, k, tileRow);
+                if (j < 0) continue;
+
+                if (mark[j] == stamp)
+                {
+                    continue;
+                }
+                mark[j] = stamp;
+                int cell = cells[j];
+                if ((cell & FLOODED) == 0)
+                {
+                    if (cell != PADDING)
+                    {
+                        counts[cell]++;
+                    }
+                    continue;
+                }
+                if (top == stack.length)
+                {
+                    stack = Arrays.copyOf(stack, 2 * top);
+                }
+                stack[top++] = j;
+            }
+        }
+    }
+
+    /**
+     * countFrontier in row-major order, as floodRowMajor.
+     */
+    private void countFrontierRowMajor(int[] counts)
+    {
+        int top = 0;
+        mark[0] = stamp;
+        stack[top++] = 0;
+        while (top > 0)
+        {
+            int i = stack[--top];
+            int x = i % size;
+            for (int k = 0; k < 4; k++)
+            {
+                int j;
+                if (k == 0) { if (i < size) continue; j = i - size; }
+                else if (k == 1) { if (x == size - 1) continue; j = i + 1; }
+                else if (k == 2) { j = i + size; if (j >= cells.length) continue; }
+                else { if (x == 0) continue; j = i - 1; }
+
+                if (mark[j] == stamp)
+                {
+                    continue;
+                }
+                mark[j] = stamp;
+                int cell = cells[j];
+                if ((cell & FLOODED) == 0)
+                {
+                    counts[cell]++;
+                    continue;
+                }
+                if (top == stack.length)
+                {
+                    stack = Arrays.copyOf(stack, 2 * top);
+                }
+                stack[top++] = j;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the neighbor of cell i above it, to its right, below it
+     * or to its left for k = 0 to 3, or -1 if there is none, in the layout TILED or
+     * MORTON. Neighbors across the right or bottom side of the board are padding;
+     * any across the top or left side are padding or out of range, given the
+     * padding column of tiles of TILED.
+     */
+    private int neighbor(int i, int k, int tileRow)
+    {
+        int j;
+        if (layout == CellLayout.TILED)
+        {
+            final int t = CellLayout.TILE, last = t - 1;
+            if (k == 0) j = (i & last * t) != 0 ? i - t : i - tileRow + last * t;
+            else if (k == 1) j = (i & last) != last ? i + 1 : i + t * t - last;
+            else if (k == 2) j = (i & last * t) != last * t ? i + t : i + tileRow - last * t;
+            else j = (i & last) != 0 ? i - 1 : i - t * t + last;
+        }
+        else
+        {
+            // Z-order: add to the x bits (even) or y bits (odd) and carry across the others
+            final int xs = 0x55555555, ys = 0xAAAAAAAA;
+            if (k == 0) j = (((i & ys) - 2) & ys) | (i & xs);
+            else if (k == 1) j = (((i | ys) + 1) & xs) | (i & ys);
+            else if (k == 2) j = (((i | xs) + 2) & ys) | (i & xs);
+            else j = (((i & xs) - 1) & xs) | (i & ys);
+        }
+        return j >= 0 && j < cells.length ? j : -1;
+    }
+
+    private static boolean passable(int cell, int c)
+    {
+        return (cell & FLOODED) != 0 || (cell & COLOR_MASK) == c;
+    }
+
+    /**
+     * Links the roots of a and b, the larger root under the smaller one. Only
+     * called for cells of a single stripe at a time, or sequentially.
+     */
+    private void union(int a, int b)
+    {
+        int ra = find(a, 0, parent.length);
+        int rb = find(b, 0, parent.length);
+        if (ra < rb)
+        {
+            parent[rb] = ra;
+        }
+        else if (rb < ra)
+        {
+            parent[ra] = rb;
+        }
+    }
+
+    /**
+     * Returns the root of i, halving the path on the way, but only writing to the
+     * parents of cells in [from, to) so that stripes never write to each other.
+     */
+    private int find(int i, int from, int to)
+    {
+        while (parent[i] != i)
+        {
+            int p = parent[i];
+            if (i >= from && i < to)
+            {
+                parent[i] = parent[p];
+            }
+            i = p;
+        }
+        return i;
+    }
+
+    /**
+     * Returns true iff the given object is a packed board with the same colors and
+     * flooded region, in any layout.
+     */
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof PackedBoard))
+        {
+            return false;
+        }
+        PackedBoard that = (PackedBoard) obj;
+        if (size != that.size)
+        {
+            return false;
+        }
+        if (layout == that.layout)
+        {
+            return Arrays.equals(cells, that.cells);
+        }
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                if (cells[columns[x] + rows[y]] != that.cells[that.columns[x] + that.rows[y]])
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a hash of the cells in row-major order, the same in every layout.
+     */
+    public int hashCode()
+    {
+        if (layout == CellLayout.ROW_MAJOR)
+        {
+            return Arrays.hashCode(cells);
+        }
+        int h = 1;
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                h = 31 * h + cells[columns[x] + rows[y]];
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Returns a 64-bit hash of the size, colors and flooded region of this board,
+     * for identifying it across runs (e.g. in a SolutionDatabase). Boards that are
+     * equal have the same fingerprint, whatever their layouts.
+     */
+    public long fingerprint()
+    {
+        long h = size * 0x9E3779B97F4A7C15L;
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                h = (h ^ (cells[columns[x] + rows[y]] & 0xFF)) * 0x100000001B3L;
+                h ^= h >>> 29;
+            }
+        }
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Returns a string representation of this board in the same format as
+     * Board.toString().
+     */
+    public String toString()
+    {
+        StringBuilder ans = new StringBuilder();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                String color = getColor(x, y).toString();
+                ans.append(isFlooded(x, y) ? color.toUpperCase() : color);
+                ans.append("\t");
+            }
+            ans.append("\n");
+        }
+        return ans.toString();
+    }
+}
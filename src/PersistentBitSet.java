@@ -0,0 +1,186 @@
+/**
+ * A PersistentBitSet is an immutable set of bits in [0, capacity), stored as a trie
+ * of 32-way branches over leaves of 1024 bits, where all-zero subtrees are null.
+ *
+ * New versions are made with a Builder, which shares every untouched subtree with
+ * the version it started from and copies only the paths to the bits it sets. Nodes
+ * a builder created itself carry its current edit token and are updated in place,
+ * so a batch of n updates copies at most n paths, and usually far fewer. build()
+ * hands out a version and takes a new token, which freezes all the nodes of that
+ * version for good; the builder may then go on from it.
+ */
+
+public class PersistentBitSet {
+    private static final int LEAF_SHIFT = 10;   // bits per leaf: 1 << LEAF_SHIFT
+    private static final int BRANCH_SHIFT = 5;  // children per branch: 1 << BRANCH_SHIFT
+    private static final int BRANCH_MASK = (1 << BRANCH_SHIFT) - 1;
+
+    private final int capacity;
+    private final int shift;   // the root covers 1 << shift bits
+    private final Node root;
+    private final int cardinality;
+
+    /**
+     * A branch (children != null) or a leaf (words != null), owned by the builder
+     * holding its edit token, if any.
+     */
+    private static final class Node {
+        final Object edit;
+        final Node[] children;
+        final long[] words;
+
+        Node(Object edit, Node[] children, long[] words)
+        {
+            this.edit = edit;
+            this.children = children;
+            this.words = words;
+        }
+
+        Node copy(Object edit)
+        {
+            return new Node(edit, children == null ? null : children.clone(), words == null ? null : words.clone());
+        }
+    }
+
+    /**
+     * Constructs an empty set of the given capacity.
+     */
+    public PersistentBitSet(int capacity)
+    {
+        this(capacity, shiftFor(capacity), null, 0);
+    }
+
+    private PersistentBitSet(int capacity, int shift, Node root, int cardinality)
+    {
+        this.capacity = capacity;
+        this.shift = shift;
+        this.root = root;
+        this.cardinality = cardinality;
+    }
+
+    private static int shiftFor(int capacity)
+    {
+        int shift = LEAF_SHIFT;
+        while (shift < 31 && (1L << shift) < capacity)
+        {
+            shift += BRANCH_SHIFT;
+        }
+        return shift;
+    }
+
+    /**
+     * Returns the number of bits this set can hold.
+     */
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of bits set.
+     */
+    public int cardinality()
+    {
+        return cardinality;
+    }
+
+    /**
+     * Returns true iff bit i is set.
+     */
+    public boolean get(int i)
+    {
+        assert i >= 0 && i < capacity;
+        Node node = root;
+        for (int s = shift; node != null; s -= BRANCH_SHIFT)
+        {
+            if (s == LEAF_SHIFT)
+            {
+                return (node.words[(i >>> 6) & ((1 << (LEAF_SHIFT - 6)) - 1)] & (1L << i)) != 0;
+            }
+            node = node.children[(i >>> (s - BRANCH_SHIFT)) & BRANCH_MASK];
+        }
+        return false;
+    }
+
+    /**
+     * Returns a builder starting from this set.
+     */
+    public Builder toBuilder()
+    {
+        return new Builder(this);
+    }
+
+    /**
+     * Makes new versions of a set, one batch of updates at a time. Builders are not
+     * thread-safe, but the sets they build are.
+     */
+    public static final class Builder {
+        private final int capacity, shift;
+        private Object edit = new Object();
+        private Node root;
+        private int cardinality;
+
+        private Builder(PersistentBitSet from)
+        {
+            capacity = from.capacity;
+            shift = from.shift;
+            root = from.root;
+            cardinality = from.cardinality;
+        }
+
+        /**
+         * Sets bit i.
+         */
+        public void set(int i)
+        {
+            assert i >= 0 && i < capacity;
+            root = editable(root, shift);
+            Node node = root;
+            for (int s = shift; s > LEAF_SHIFT; s -= BRANCH_SHIFT)
+            {
+                int k = (i >>> (s - BRANCH_SHIFT)) & BRANCH_MASK;
+                node = node.children[k] = editable(node.children[k], s - BRANCH_SHIFT);
+            }
+            int w = (i >>> 6) & ((1 << (LEAF_SHIFT - 6)) - 1);
+            long old = node.words[w];
+            node.words[w] = old | (1L << i);
+            if (old != node.words[w])
+            {
+                cardinality++;
+            }
+        }
+
+        /**
+         * Clears all bits.
+         */
+        public void clear()
+        {
+            root = null;
+            cardinality = 0;
+        }
+
+        /**
+         * Returns a set holding the bits set so far. Later updates do not affect it.
+         */
+        public PersistentBitSet build()
+        {
+            edit = new Object();
+            return new PersistentBitSet(capacity, shift, root, cardinality);
+        }
+
+        /**
+         * Returns the given node of the given level if this builder may update it in
+         * place, a copy of it that it may, or a new empty node.
+         */
+        private Node editable(Node node, int s)
+        {
+            if (node == null)
+            {
+                return s == LEAF_SHIFT
+                        ? new Node(edit, null, new long[1 << (LEAF_SHIFT - 6)])
+                        : new Node(edit, new Node[1 << BRANCH_SHIFT], null);
+            }
+            return node.edit == edit ? node : node.copy(edit);
+        }
+    }
+}
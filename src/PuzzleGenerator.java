@@ -0,0 +1,268 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A PuzzleGenerator deals seeded boards of one size and keeps those that need a
+ * number of moves in a requested band, such as 18 to 20 moves on 14x14.
+ *
+ * Every candidate is played out on packed copies by a greedy search
+ * (Constants.PUZZLE_RATING_DEPTH moves deep), which gives a solution and so an
+ * upper bound; a board is kept iff that solution is within the band. The number
+ * of distinct colors outside the region, a lower bound on the moves left, cuts
+ * the playout short as soon as the moves played plus the bound exceed the band.
+ * The rating is thus near-optimal rather than optimal: a kept board never needs
+ * more moves than its rating, but may need a few less.
+ *
+ * Candidates are rated in parallel batches, each worker with its own scratch
+ * boards, and a puzzle is identified by its seed: new Board(size, seed) deals it
+ * again. Candidate seeds derive from the generator's seed, so a generator always
+ * produces the same puzzles in the same order.
+ */
+
+public class PuzzleGenerator {
+    private static final int BATCH = 1024;
+
+    private final int size, minMoves, maxMoves;
+    private final long seed;
+    private final GreedyStrategy rater = new GreedyStrategy(Constants.PUZZLE_RATING_DEPTH);
+    private final PackedBoard[][] scratch;   // levels for the rater, per worker
+    private long next;   // index of the next candidate to rate
+    private final ArrayDeque<Puzzle> pending = new ArrayDeque<>();   // rated before next, not yet returned
+
+    private long candidates, hits, elapsedNanos;
+
+    /**
+     * A generated puzzle: the seed to deal it from, the lower bound on its moves,
+     * and a solution within the requested band.
+     */
+    public static final class Puzzle {
+        private final int size;
+        private final long seed;
+        private final int lowerBound;
+        private final WaterColor[] solution;
+
+        Puzzle(int size, long seed, int lowerBound, WaterColor[] solution)
+        {
+            this.size = size;
+            this.seed = seed;
+            this.lowerBound = lowerBound;
+            this.solution = solution;
+        }
+
+        public int getSize()
+        {
+            return size;
+        }
+
+        /**
+         * Returns the seed that deals this puzzle, see toBoard().
+         */
+        public long getSeed()
+        {
+            return seed;
+        }
+
+        /**
+         * Returns a number of moves this puzzle cannot be solved in fewer than.
+         */
+        public int getLowerBound()
+        {
+            return lowerBound;
+        }
+
+        /**
+         * Returns the rating of this puzzle: the length of the solution found.
+         */
+        public int getMoves()
+        {
+            return solution.length;
+        }
+
+        public WaterColor[] getSolution()
+        {
+            return solution.clone();
+        }
+
+        /**
+         * Deals this puzzle on a new board.
+         */
+        public Board toBoard()
+        {
+            return new Board(size, seed);
+        }
+
+        public String toString()
+        {
+            return size + "x" + size + " seed " + seed + ": " + solution.length + " moves (at least " + lowerBound + ")";
+        }
+    }
+
+    /**
+     * Constructs a generator of boards of the given size needing from minMoves to
+     * maxMoves moves, with candidate seeds derived from the given seed.
+     */
+    public PuzzleGenerator(int size, int minMoves, int maxMoves, long seed)
+    {
+        if (size < 2 || minMoves < 1 || minMoves > maxMoves)
+        {
+            throw new IllegalArgumentException("no puzzles of size " + size + " need " + minMoves + " to " + maxMoves + " moves");
+        }
+        this.size = size;
+        this.minMoves = minMoves;
+        this.maxMoves = maxMoves;
+        this.seed = seed;
+        int workers = Runtime.getRuntime().availableProcessors();
+        scratch = new PackedBoard[workers][Constants.PUZZLE_RATING_DEPTH + 1];
+        for (PackedBoard[] levels : scratch)
+        {
+            for (int i = 1; i < levels.length; i++)
+            {
+                levels[i] = new PackedBoard(size, 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the next count puzzles, or fewer if maxCandidates candidates have been
+     * rated without finding them all.
+     */
+    public List<Puzzle> generate(int count, long maxCandidates)
+    {
+        List<Puzzle> ans = new ArrayList<>();
+        while (ans.size() < count && !pending.isEmpty())
+        {
+            ans.add(pending.poll());
+        }
+        long startTime = System.nanoTime();
+        for (long rated = 0; ans.size() < count && rated < maxCandidates; rated += BATCH)
+        {
+            long first = next;
+            Puzzle[] found = new Puzzle[BATCH];
+            IntStream.range(0, scratch.length).parallel().forEach(w -> {
+                for (int i = w; i < BATCH; i += scratch.length)
+                {
+                    found[i] = rate(seedOf(first + i), scratch[w]);
+                }
+            });
+            // Keep the puzzles in candidate order; any beyond count wait for the next call.
+            next += BATCH;
+            candidates += BATCH;
+            for (int i = 0; i < BATCH; i++)
+            {
+                if (found[i] != null)
+                {
+                    hits++;
+                    if (ans.size() < count)
+                    {
+                        ans.add(found[i]);
+                    }
+                    else
+                    {
+                        pending.add(found[i]);
+                    }
+                }
+            }
+        }
+        elapsedNanos += System.nanoTime() - startTime;
+        return ans;
+    }
+
+    /**
+     * Returns the puzzle dealt from the given seed if its rating is within the band,
+     * or null, using the given scratch boards.
+     */
+    private Puzzle rate(long seed, PackedBoard[] levels)
+    {
+        PackedBoard board = new PackedBoard(size, seed);
+        int lowerBound = board.countOutsideColors();
+        if (lowerBound > maxMoves)
+        {
+            return null;
+        }
+        levels[0] = board;
+        WaterColor[] solution = new WaterColor[maxMoves];
+        int moves = 0;
+        while (!board.fullyFlooded())
+        {
+            // Give up as soon as the solution cannot end within the band.
+            if (moves + board.countOutsideColors() > maxMoves)
+            {
+                return null;
+            }
+            solution[moves] = rater.suggest(levels);
+            board.flood(solution[moves++]);
+        }
+        return moves < minMoves ? null : new Puzzle(size, seed, lowerBound, Arrays.copyOf(solution, moves));
+    }
+
+    /**
+     * Returns the seed of the candidate with the given index: the generator's seed
+     * and the index, mixed by the splitmix64 finalizer, since Random gives similar
+     * first numbers for similar seeds.
+     */
+    private long seedOf(long index)
+    {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the number of candidates rated so far.
+     */
+    public long getCandidates()
+    {
+        return candidates;
+    }
+
+    /**
+     * Returns the number of candidates rated so far whose rating was within the band,
+     * including any dropped because enough puzzles had been found.
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of candidates rated per second of generating.
+     */
+    public double getBoardsPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : candidates * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the number of puzzles found per second of generating.
+     */
+    public double getPuzzlesPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : hits * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Generates puzzles and reports the generator's throughput. Arguments: size,
+     * least and most moves, and number of puzzles (14, 18, 20 and 10000 by default).
+     */
+    public static void main(String... args)
+    {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+        int minMoves = args.length > 1 ? Integer.parseInt(args[1]) : 18;
+        int maxMoves = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int count = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+        PuzzleGenerator generator = new PuzzleGenerator(size, minMoves, maxMoves, System.nanoTime());
+        List<Puzzle> puzzles = generator.generate(count, Long.MAX_VALUE);
+        System.out.printf("%d puzzles of %d to %d moves on %dx%d from %d candidates:%n",
+                puzzles.size(), minMoves, maxMoves, size, size, generator.getCandidates());
+        System.out.printf("%.0f boards/s rated, %.0f puzzles/s (%.0f per minute)%n",
+                generator.getBoardsPerSecond(), generator.getPuzzlesPerSecond(), 60 * generator.getPuzzlesPerSecond());
+        if (!puzzles.isEmpty())
+        {
+            System.out.println("first: " + puzzles.get(0));
+        }
+    }
+}
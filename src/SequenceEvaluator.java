@@ -0,0 +1,169 @@
+import java.util.Arrays;
+
+/**
+ * A SequenceEvaluator scores sequences of moves from one fixed start position: the
+ * score of a sequence is the number of tiles flooded after playing all of it.
+ *
+ * Every evaluation runs on packed scratch boards, one per move played, which are
+ * allocated once and reused. The scratch board after move k is kept until another
+ * sequence differs from the current one within its first k moves, so sequences
+ * sharing a prefix only replay their differing suffixes. The bulk variant sorts its
+ * sequences first, so that every shared prefix, as in a trie, is played only once.
+ */
+
+public class SequenceEvaluator {
+    private final PackedBoard start;
+
+    // levels[k] is the start position after the first k moves of current
+    private PackedBoard[] levels;
+    private WaterColor[] current = new WaterColor[0];
+    private int valid;   // levels[0..valid] hold the positions after current[0..valid)
+    private int[] hashes = new int[1];
+    private int hashed;   // hashes[0..hashed) are the hash codes of levels[0..hashed)
+
+    /**
+     * Constructs an evaluator for sequences played from the given position, which
+     * it copies.
+     */
+    public SequenceEvaluator(PackedBoard start)
+    {
+        this.start = new PackedBoard(start);
+        levels = new PackedBoard[] { this.start };
+    }
+
+    /**
+     * Makes the given position the start of all later evaluations, reusing the
+     * scratch boards if it has the same size as the current one.
+     */
+    public void reset(PackedBoard start)
+    {
+        if (start.getSize() == this.start.getSize())
+        {
+            this.start.copyFrom(start);
+            valid = 0;
+            hashed = 0;
+        }
+        else
+        {
+            throw new IllegalArgumentException("Expected a board of size " + this.start.getSize());
+        }
+    }
+
+    /**
+     * Returns the size of the boards this evaluator plays on.
+     */
+    public int getSize()
+    {
+        return start.getSize();
+    }
+
+    /**
+     * Returns the number of tiles flooded after playing the given sequence from the
+     * start position.
+     */
+    public int evaluate(WaterColor[] sequence)
+    {
+        int played = play(sequence);
+        return levels[played].getFloodedCount();
+    }
+
+    /**
+     * Plays the given sequence like evaluate(), and for every k up to the returned
+     * number of moves played, sets counts[k] to the number of tiles flooded after
+     * the first k moves and hashes[k] to the hash code of that position. Fewer moves
+     * than given are played iff the board is fully flooded before the end.
+     */
+    public int trace(WaterColor[] sequence, int[] counts, int[] hashes)
+    {
+        int played = play(sequence);
+        if (played >= this.hashes.length)
+        {
+            this.hashes = Arrays.copyOf(this.hashes, levels.length);
+        }
+        for (; hashed <= played; hashed++)
+        {
+            this.hashes[hashed] = levels[hashed].hashCode();
+        }
+        for (int k = 0; k <= played; k++)
+        {
+            counts[k] = levels[k].getFloodedCount();
+            hashes[k] = this.hashes[k];
+        }
+        return played;
+    }
+
+    /**
+     * Brings levels up to date with the given sequence, and returns the index of
+     * the last level played.
+     */
+    private int play(WaterColor[] sequence)
+    {
+        int shared = 0;
+        int limit = Math.min(valid, sequence.length);
+        while (shared < limit && sequence[shared] == current[shared])
+        {
+            shared++;
+        }
+        if (sequence.length > current.length)
+        {
+            current = Arrays.copyOf(current, sequence.length);
+        }
+        if (sequence.length >= levels.length)
+        {
+            int old = levels.length;
+            levels = Arrays.copyOf(levels, sequence.length + 1);
+            for (int i = old; i < levels.length; i++)
+            {
+                levels[i] = new PackedBoard(start);
+            }
+        }
+
+        int k = shared;
+        // A fully flooded board stays that way, so the rest of the sequence is moot.
+        while (k < sequence.length && !levels[k].fullyFlooded())
+        {
+            levels[k + 1].copyFrom(levels[k]);
+            levels[k + 1].flood(sequence[k]);
+            current[k] = sequence[k];
+            k++;
+        }
+        valid = k;
+        hashed = Math.min(hashed, shared + 1);
+        return k;
+    }
+
+    /**
+     * Returns the scores of all the given sequences, in the given order. The
+     * sequences are played in lexicographic order, each from the longest prefix it
+     * shares with the one played before it.
+     */
+    public int[] evaluate(WaterColor[][] sequences)
+    {
+        Integer[] order = new Integer[sequences.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(sequences[a], sequences[b]));
+
+        int[] ans = new int[sequences.length];
+        for (int i : order)
+        {
+            ans[i] = evaluate(sequences[i]);
+        }
+        return ans;
+    }
+
+    private static int compare(WaterColor[] a, WaterColor[] b)
+    {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++)
+        {
+            if (a[i] != b[i])
+            {
+                return a[i].compareTo(b[i]);
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+}
@@ -0,0 +1,431 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * A SolutionDatabase remembers the shortest known solution of every board it is
+ * given, keyed by a fingerprint of the board (see PackedBoard.fingerprint()), in a
+ * directory that persists across runs.
+ *
+ * Solutions are appended to a log and never rewritten:
+ *
+ *   log    magic, then records of fingerprint (long), length (int), one byte per
+ *          move (its WaterColor ordinal) and a CRC32 of all that (int)
+ *
+ * The log is indexed by an open-addressing hash table in a memory-mapped file,
+ * which maps each fingerprint to the offset of its best record:
+ *
+ *   index  magic, capacity, count, length of the log indexed (longs), then
+ *          capacity slots of fingerprint and offset + 1 (longs; 0 if empty)
+ *
+ * Lookups take no lock, so any number of threads may read while one writes: a
+ * writer fills in a slot's fingerprint before publishing its offset, and readers
+ * read the offset first. When the index gets half full, a twice larger one is
+ * built beside it and swapped in. If the index is lost or behind the log (say,
+ * after a crash), it is brought up to date from the log on opening, and a torn
+ * last record is cut off.
+ */
+
+public class SolutionDatabase implements Closeable {
+    private static final long LOG_MAGIC = 0x464C4F4F444C4F47L;     // "FLOODLOG"
+    private static final long INDEX_MAGIC = 0x464C4F4F44494458L;   // "FLOODIDX"
+    private static final int HEADER = 32;
+    private static final int SLOT = 16;
+    private static final int MIN_CAPACITY = 1024;
+    private static final int RECORD_OVERHEAD = 8 + 4 + 4;
+    private static final WaterColor[] COLORS = WaterColor.values();
+
+    // aligned long access with memory ordering on the mapped index
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path logFile, indexFile;
+    private final FileChannel log;
+    private long logLength;
+    private volatile MappedByteBuffer index;
+
+    /**
+     * Opens the database in the given directory, creating it if needed.
+     */
+    public static SolutionDatabase open(Path dir)
+    {
+        try
+        {
+            Files.createDirectories(dir);
+            return new SolutionDatabase(dir);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Unable to open the solution database in " + dir, e);
+        }
+    }
+
+    private SolutionDatabase(Path dir) throws IOException
+    {
+        logFile = dir.resolve("solutions.log");
+        indexFile = dir.resolve("solutions.idx");
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (log.size() < 8)
+        {
+            log.truncate(0);
+            log.write(ByteBuffer.allocate(8).putLong(0, LOG_MAGIC), 0);
+        }
+        else if (readLong(0) != LOG_MAGIC)
+        {
+            log.close();
+            throw new IOException(logFile + " is not a solution log");
+        }
+        logLength = 8;
+
+        if (Files.exists(indexFile))
+        {
+            index = map(indexFile);
+            if (index.getLong(0) == INDEX_MAGIC && index.getLong(24) <= log.size())
+            {
+                logLength = index.getLong(24);
+            }
+            else
+            {
+                index = null;
+            }
+        }
+        if (index == null)
+        {
+            index = build(indexFile, MIN_CAPACITY);
+        }
+        replay();
+    }
+
+    /**
+     * Indexes the records after the indexed part of the log, and cuts the log off at
+     * the first incomplete or corrupt one.
+     */
+    private void replay() throws IOException
+    {
+        long end = log.size();
+        while (logLength + RECORD_OVERHEAD <= end)
+        {
+            int length = readInt(logLength + 8);
+            if (length < 0 || logLength + RECORD_OVERHEAD + length > end)
+            {
+                break;
+            }
+            ByteBuffer record = read(logLength, RECORD_OVERHEAD + length);
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 0, 12 + length);
+            if ((int) crc.getValue() != record.getInt(12 + length))
+            {
+                break;
+            }
+            long fingerprint = record.getLong(0);
+            int known = getLength(fingerprint);
+            if (known < 0)
+            {
+                makeRoom();
+            }
+            if (known < 0 || length < known)
+            {
+                link(index, fingerprint, logLength);
+            }
+            logLength += RECORD_OVERHEAD + length;
+        }
+        log.truncate(logLength);
+        index.putLong(24, logLength);
+    }
+
+    /**
+     * Returns the shortest known solution of the board with the given fingerprint,
+     * or null if there is none.
+     */
+    public WaterColor[] get(long fingerprint)
+    {
+        long offset = find(index, fingerprint);
+        if (offset < 0)
+        {
+            return null;
+        }
+        try
+        {
+            int length = readInt(offset + 8);
+            ByteBuffer moves = read(offset + 12, length);
+            WaterColor[] ans = new WaterColor[length];
+            for (int i = 0; i < length; i++)
+            {
+                ans[i] = COLORS[moves.get(i)];
+            }
+            return ans;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the length of the shortest known solution of the board with the given
+     * fingerprint, or -1 if there is none.
+     */
+    public int getLength(long fingerprint)
+    {
+        long offset = find(index, fingerprint);
+        try
+        {
+            return offset < 0 ? -1 : readInt(offset + 8);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the solution of the given board from the database if there is one,
+     * and otherwise computes it with the given solver and stores it.
+     */
+    public WaterColor[] solve(PackedBoard board, Function<PackedBoard, WaterColor[]> solver)
+    {
+        long fingerprint = board.fingerprint();
+        WaterColor[] ans = get(fingerprint);
+        if (ans == null)
+        {
+            ans = solver.apply(board);
+            put(fingerprint, ans);
+        }
+        return ans;
+    }
+
+    /**
+     * Stores the given solution of the board with the given fingerprint, unless a
+     * solution at least as short is known already.
+     * @return boolean true iff the solution was stored
+     */
+    public synchronized boolean put(long fingerprint, WaterColor[] moves)
+    {
+        int known = getLength(fingerprint);
+        if (known >= 0 && known <= moves.length)
+        {
+            return false;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + moves.length);
+        record.putLong(fingerprint).putInt(moves.length);
+        for (WaterColor move : moves)
+        {
+            record.put((byte) move.ordinal());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+        try
+        {
+            long offset = logLength;
+            while (record.hasRemaining())
+            {
+                log.write(record, offset + record.position());
+            }
+            logLength += record.limit();
+            if (known < 0)
+            {
+                makeRoom();
+            }
+            link(index, fingerprint, offset);
+            index.putLong(24, logLength);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of boards with a known solution.
+     */
+    public long size()
+    {
+        return index.getLong(16);
+    }
+
+    /**
+     * Writes the log and index through to disk.
+     */
+    public synchronized void flush()
+    {
+        try
+        {
+            log.force(false);
+            index.force();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes and closes the database.
+     */
+    public synchronized void close()
+    {
+        flush();
+        try
+        {
+            log.close();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the log offset stored for the given fingerprint in the given index, or
+     * -1 if there is none.
+     */
+    private static long find(MappedByteBuffer index, long fingerprint)
+    {
+        long mask = index.getLong(8) - 1;
+        for (long slot = mix(fingerprint) & mask; ; slot = (slot + 1) & mask)
+        {
+            int at = HEADER + (int) slot * SLOT;
+            long value = (long) LONGS.getAcquire(index, at + 8);
+            if (value == 0)
+            {
+                return -1;
+            }
+            if (index.getLong(at) == fingerprint)
+            {
+                return value - 1;
+            }
+        }
+    }
+
+    /**
+     * Points the slot of the given fingerprint at the given log offset, taking a new
+     * slot if the fingerprint has none yet. Only called by one writer at a time, and
+     * never while the index is more than half full.
+     */
+    private static void link(MappedByteBuffer index, long fingerprint, long offset)
+    {
+        long mask = index.getLong(8) - 1;
+        for (long slot = mix(fingerprint) & mask; ; slot = (slot + 1) & mask)
+        {
+            int at = HEADER + (int) slot * SLOT;
+            long value = index.getLong(at + 8);
+            if (value == 0)
+            {
+                index.putLong(at, fingerprint);
+                index.putLong(16, index.getLong(16) + 1);
+            }
+            else if (index.getLong(at) != fingerprint)
+            {
+                continue;
+            }
+            LONGS.setRelease(index, at + 8, offset + 1);
+            return;
+        }
+    }
+
+    /**
+     * Swaps in a twice larger index if the current one has no room for one more
+     * fingerprint without getting over half full.
+     */
+    private void makeRoom() throws IOException
+    {
+        if (2 * (index.getLong(16) + 1) > index.getLong(8))
+        {
+            index = build(indexFile, 2 * index.getLong(8));
+        }
+    }
+
+    /**
+     * Builds an index of the given capacity holding the entries of the current one,
+     * next to the given file, and atomically moves it into place. Readers go on using
+     * the current index until the caller publishes the new one.
+     */
+    private MappedByteBuffer build(Path file, long capacity) throws IOException
+    {
+        if (HEADER + capacity * SLOT > Integer.MAX_VALUE)
+        {
+            throw new IllegalStateException("Solution index full");
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        MappedByteBuffer old = index;
+        MappedByteBuffer ans = create(tmp, capacity);
+        if (old != null)
+        {
+            for (int at = HEADER; at < old.capacity(); at += SLOT)
+            {
+                long value = old.getLong(at + 8);
+                if (value != 0)
+                {
+                    link(ans, old.getLong(at), value - 1);
+                }
+            }
+        }
+        ans.putLong(24, old == null ? 8 : logLength);
+        ans.putLong(0, INDEX_MAGIC);
+        ans.force();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return ans;
+    }
+
+    private static MappedByteBuffer create(Path file, long capacity) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            MappedByteBuffer ans = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + capacity * SLOT);
+            ans.putLong(8, capacity);
+            return ans;
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+    }
+
+    private static long mix(long fingerprint)
+    {
+        return (fingerprint * 0x9E3779B97F4A7C15L) >>> 20;
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException
+    {
+        ByteBuffer ans = ByteBuffer.allocate(length);
+        while (ans.hasRemaining())
+        {
+            if (log.read(ans, offset + ans.position()) < 0)
+            {
+                throw new IOException("Unexpected end of " + logFile);
+            }
+        }
+        return ans;
+    }
+
+    private long readLong(long offset) throws IOException
+    {
+        return read(offset, 8).getLong(0);
+    }
+
+    private int readInt(long offset) throws IOException
+    {
+        return read(offset, 4).getInt(0);
+    }
+}
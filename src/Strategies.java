@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registry of the suggest strategies known to the game.
+ */
+
+public class Strategies {
+    /**
+     * The vote over the perimeter of the flooded region (Board.soberSuggest).
+     */
+    public static final SuggestStrategy SOBER = new SuggestStrategy() {
+        public String getName()
+        {
+            return "sober";
+        }
+
+        public int getDepth()
+        {
+            return 0;
+        }
+
+        public WaterColor suggest(Board board)
+        {
+            return board.soberSuggest();
+        }
+    };
+
+    /**
+     * The perimeter-maximizing strategy (Board.perimeterSuggest).
+     */
+    public static final SuggestStrategy PERIMETER = new SuggestStrategy() {
+        public String getName()
+        {
+            return "perimeter";
+        }
+
+        public int getDepth()
+        {
+            return 0;
+        }
+
+        public WaterColor suggest(Board board)
+        {
+            return board.perimeterSuggest();
+        }
+
+        public boolean isCacheable()
+        {
+            return true;
+        }
+    };
+
+    /**
+     * Monte Carlo Tree Search with the time budget for interactive hints.
+     */
+    public static final MctsStrategy MCTS_HINT = new MctsStrategy(Constants.MCTS_HINT_MILLIS);
+
+    /**
+     * Monte Carlo Tree Search with the time budget for autoplayed moves.
+     */
+    public static final MctsStrategy MCTS_AUTOPLAY = new MctsStrategy(Constants.MCTS_AUTOPLAY_MILLIS);
+
+    /**
+     * The genetic solver with the time budget for autoplayed moves.
+     */
+    public static final GeneticStrategy GENETIC_AUTOPLAY = new GeneticStrategy(Constants.GENETIC_AUTOPLAY_MILLIS);
+
+    private static final List<SuggestStrategy> registered = new ArrayList<>();
+
+    static {
+        register(SOBER);
+        register(PERIMETER);
+        register(new GreedyStrategy(1));
+        register(new GreedyStrategy(3));
+        register(MCTS_AUTOPLAY);
+        register(GENETIC_AUTOPLAY);
+    }
+
+    private Strategies() {
+    }
+
+    /**
+     * Adds the given strategy to the registry.
+     */
+    public static synchronized void register(SuggestStrategy strategy)
+    {
+        registered.add(strategy);
+    }
+
+    /**
+     * Returns all registered strategies in registration order.
+     */
+    public static synchronized List<SuggestStrategy> all()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(registered));
+    }
+}
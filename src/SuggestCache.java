@@ -0,0 +1,189 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe cache of suggestions keyed by board state, strategy name
+ * and search depth. The board state is identified by Board.stateHash(), which only
+ * depends on what the board looks like (not on how it got there), so the cache can
+ * be shared by every session: two games showing identical boards share entries.
+ *
+ * The entries are spread over stripes by hash, each with its own lock, so that
+ * threads looking up different boards rarely wait for each other. When a stripe is
+ * full, its least recently used entry is evicted. Small caches have a single
+ * stripe, and so evict exactly the least recently used entry of all.
+ */
+
+public class SuggestCache {
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_STRIPE_CAPACITY = 1024;
+
+    private final int capacity;
+    private final Stripe[] stripes;
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), evictions = new AtomicLong();
+
+    /**
+     * One lock's share of the entries, in access order.
+     */
+    private final class Stripe extends LinkedHashMap<Key, WaterColor> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Stripe(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<Key, WaterColor> eldest)
+        {
+            if (size() > capacity)
+            {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Constructs an empty cache holding at most capacity suggestions.
+     */
+    public SuggestCache(int capacity)
+    {
+        this.capacity = capacity;
+        int count = 1;
+        while (count < MAX_STRIPES && capacity / (2 * count) >= MIN_STRIPE_CAPACITY)
+        {
+            count *= 2;
+        }
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++)
+        {
+            stripes[i] = new Stripe(capacity / count);
+        }
+    }
+
+    /**
+     * Returns the suggestion of the given strategy for the given board, computing
+     * it (outside the lock) only if it is not cached yet.
+     */
+    public WaterColor get(Board board, SuggestStrategy strategy)
+    {
+        Key key = new Key(board.stateHash(), board.getSize(), strategy.getName(), strategy.getDepth());
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe)
+        {
+            WaterColor cached = stripe.get(key);
+            if (cached != null)
+            {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        WaterColor suggestion = strategy.suggest(board);
+        synchronized (stripe)
+        {
+            stripe.put(key, suggestion);
+        }
+        return suggestion;
+    }
+
+    private Stripe stripeOf(Key key)
+    {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Drops all entries and resets the statistics.
+     */
+    public void clear()
+    {
+        for (Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                stripe.clear();
+            }
+        }
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    public int size()
+    {
+        int ans = 0;
+        for (Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                ans += stripe.size();
+            }
+        }
+        return ans;
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the fraction of lookups answered from the cache.
+     */
+    public double getHitRate()
+    {
+        long h = hits.get(), m = misses.get();
+        return h + m == 0 ? 0 : (double) h / (h + m);
+    }
+
+    public String toString()
+    {
+        return String.format("SuggestCache[%d/%d entries, %d stripes, %d hits, %d misses, %d evictions, %.1f%% hit rate]",
+                size(), capacity, stripes.length, getHits(), getMisses(), getEvictions(), 100 * getHitRate());
+    }
+
+    private static final class Key {
+        private final long state;
+        private final int size;
+        private final String strategy;
+        private final int depth;
+
+        Key(long state, int size, String strategy, int depth)
+        {
+            this.state = state;
+            this.size = size;
+            this.strategy = strategy;
+            this.depth = depth;
+        }
+
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof Key)
+            {
+                Key that = (Key) obj;
+                return state == that.state && size == that.size && depth == that.depth && strategy.equals(that.strategy);
+            }
+            return false;
+        }
+
+        public int hashCode()
+        {
+            return (int) (state ^ (state >>> 32)) * 31 + depth;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * A SuggestStrategy picks the next move for a board. Strategies are identified by
+ * their name and search depth, which is how suggestions are cached, so two
+ * strategies with the same name and depth must always suggest the same color for
+ * the same board state.
+ */
+
+public interface SuggestStrategy {
+    /**
+     * Returns the name of this strategy.
+     */
+    String getName();
+
+    /**
+     * Returns how many moves ahead this strategy looks (0 if it does not search).
+     */
+    int getDepth();
+
+    /**
+     * Returns the color this strategy suggests for the next move on the given board.
+     */
+    WaterColor suggest(Board board);
+
+    /**
+     * Returns true iff suggestions of this strategy are worth keeping in the
+     * suggestion cache, i.e. cost more than a lookup. Strategies that answer in
+     * constant time, such as Strategies.SOBER, are asked directly, and so are
+     * strategies that think within a time budget or at random (MctsStrategy,
+     * GeneticStrategy), whose suggestions may differ from one call to the next.
+     */
+    default boolean isCacheable()
+    {
+        return false;
+    }
+
+    /**
+     * Returns true iff suggest hands work to other threads of the common fork-join
+     * pool, so that measuring the calling thread alone misses some of its cost.
+     */
+    default boolean forksWorkers()
+    {
+        return false;
+    }
+}
@@ -31,6 +31,968 @@ public class Testing {
 
     }
 
+    @Test
+    public void testReset()
+    {
+        Board board = new Board(6, 7);
+        board.flood(WaterColor.RED);
+        board.reset(42);
+        assertEquals(new Board(6, 42).toString(), board.toString());
+
+        Board pooled = BoardPool.acquire(6, 42);
+        assertEquals(board.toString(), pooled.toString());
+        assertSame(pooled, BoardPool.acquire(6, 43));
+    }
+
+    @Test
+    public void testPackedFlood()
+    {
+        java.util.Random gen = new java.util.Random(5);
+        for (int size = 1; size <= 8; size++)
+        {
+            long seed = gen.nextLong();
+            Board board = new Board(size, seed);
+            PackedBoard sequential = new PackedBoard(size, seed);
+            PackedBoard parallel = new PackedBoard(size, seed);
+            assertEquals(board.pack(), sequential);
+            while (!board.fullyFlooded())
+            {
+                WaterColor color = WaterColor.pickOneExcept(board.get(Coord.ORIGIN).getColor());
+                board.flood1(color);
+                sequential.floodSequential(color);
+                parallel.floodParallel(color);
+                assertEquals(board.pack(), sequential);
+                assertEquals(sequential, parallel);
+            }
+            assertTrue(sequential.fullyFlooded());
+        }
+    }
+
+    @Test
+    public void testParallelStripes()
+    {
+        // Stripes have at least 16 rows, so these sizes give several stripes each,
+        // with a last stripe of 1, 8 or a few rows.
+        for (int size : new int[] { 33, 40, 70 })
+        {
+            for (CellLayout layout : CellLayout.values())
+            {
+                PackedBoard sequential = new PackedBoard(size, size, layout);
+                PackedBoard parallel = new PackedBoard(size, size, layout);
+                java.util.Random gen = new java.util.Random(size);
+                while (!sequential.fullyFlooded())
+                {
+                    WaterColor color = WaterColor.pickOne(gen);
+                    assertEquals(sequential.floodSequential(color), parallel.floodParallel(color));
+                    assertEquals(sequential, parallel);
+                }
+                assertTrue(parallel.fullyFlooded());
+            }
+        }
+    }
+
+    @Test
+    public void testCounts()
+    {
+        Board board = new Board(9, 11);
+        while (!board.fullyFlooded())
+        {
+            for (WaterColor color : WaterColor.values())
+            {
+                int outside = 0, frontier = 0;
+                for (int y = 0; y < 9; y++)
+                    for (int x = 0; x < 9; x++) {
+                        Coord coord = new Coord(x, y);
+                        if (board.isFlooded(coord) || board.get(coord).getColor() != color)
+                            continue;
+                        outside++;
+                        for (Coord neighbor : coord.neighbors(9))
+                            if (board.isFlooded(neighbor)) {
+                                frontier++;
+                                break;
+                            }
+                    }
+                assertEquals(outside, board.countOutside(color));
+                assertEquals(frontier, board.countFrontier(color));
+            }
+            for (WaterColor color : WaterColor.values())
+                if (board.touches(color)) {
+                    board.flood(color);
+                    break;
+                }
+        }
+        assertEquals(0, board.countOutsideColors());
+    }
+
+    @Test
+    public void testPerimeterSuggest()
+    {
+        int n = 12;
+        Board board = new Board(n, 32);
+        WaterColor[] colors = WaterColor.values();
+        int moves = 0;
+        while (!board.fullyFlooded())
+        {
+            // Rescan the frontier of every color, and the tiles each would expose.
+            int[] frontier = new int[colors.length], exposed = new int[colors.length];
+            for (WaterColor color : colors)
+            {
+                java.util.Set<Coord> seen = new java.util.HashSet<>();
+                for (int y = 0; y < n; y++)
+                    for (int x = 0; x < n; x++) {
+                        Coord coord = new Coord(x, y);
+                        if (board.isFlooded(coord) || board.get(coord).getColor() != color)
+                            continue;
+                        boolean onFrontier = false;
+                        for (Coord neighbor : coord.neighbors(n))
+                            onFrontier |= board.isFlooded(neighbor);
+                        if (!onFrontier)
+                            continue;
+                        frontier[color.ordinal()]++;
+                        for (Coord neighbor : coord.neighbors(n)) {
+                            boolean exposedBefore = false;
+                            for (Coord next : neighbor.neighbors(n))
+                                exposedBefore |= board.isFlooded(next);
+                            if (!board.isFlooded(neighbor) && !exposedBefore
+                                    && board.get(neighbor).getColor() != color && seen.add(neighbor))
+                                exposed[color.ordinal()]++;
+                        }
+                    }
+            }
+
+            // The perimeter index agrees with the rescan, and so do both votes over it.
+            WaterColor sober = board.get(Coord.ORIGIN).getColor(), perimeter = sober;
+            int best = -1;
+            for (WaterColor color : colors)
+            {
+                int c = color.ordinal();
+                assertEquals(frontier[c], board.countFrontier(color));
+                if (frontier[c] > frontier[sober.ordinal()])
+                    sober = color;
+                int score = frontier[c] + exposed[c];
+                if (frontier[c] > 0 && (score > best || (score == best && frontier[c] > frontier[perimeter.ordinal()]))) {
+                    best = score;
+                    perimeter = color;
+                }
+            }
+            assertEquals(sober, board.soberSuggest());
+            assertEquals(perimeter, board.perimeterSuggest());
+
+            // Take turns with the flood functions, which all keep the index.
+            if (moves % 3 == 0)
+                board.flood(perimeter);
+            else if (moves % 3 == 1)
+                board.flood1(perimeter);
+            else
+                board.flood2(perimeter);
+            moves++;
+        }
+    }
+
+    @Test
+    public void testSuggestCache()
+    {
+        Board board = new Board(7, 3);
+        Board twin = new Board(7, 3);
+        assertEquals(board.stateHash(), twin.stateHash());
+        assertFalse(board.stateHash() == new Board(7, 4).stateHash());
+
+        SuggestCache cache = new SuggestCache(2);
+        SuggestStrategy greedy = new GreedyStrategy(2);
+        WaterColor color = cache.get(board, greedy);
+        assertEquals(color, cache.get(twin, greedy));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        board.flood(color);
+        assertFalse(board.stateHash() == twin.stateHash());
+        twin.flood(color);
+        assertEquals(board.stateHash(), twin.stateHash());
+        cache.get(board, greedy);
+        cache.get(board, Strategies.SOBER);
+        assertEquals(1, cache.getEvictions());
+
+        // Constant-time strategies are asked directly, without a lookup.
+        SuggestCache shared = Board.getSuggestions();
+        long lookups = shared.getHits() + shared.getMisses();
+        assertEquals(Strategies.SOBER.suggest(board), board.suggest(Strategies.SOBER));
+        assertEquals(lookups, shared.getHits() + shared.getMisses());
+
+        // A large cache is striped, and still holds no more than its capacity.
+        cache = new SuggestCache(1 << 12);
+        for (long seed = 0; seed < 5000; seed++)
+        {
+            cache.get(new Board(3, seed), greedy);
+        }
+        assertTrue(cache.size() <= 1 << 12);
+        assertEquals(5000, cache.getMisses() + cache.getHits());
+    }
+
+    @Test
+    public void testMcts()
+    {
+        Board board = new Board(8, 2);
+        MctsStrategy mcts = new MctsStrategy(5, 2);
+        while (!board.fullyFlooded())
+        {
+            WaterColor color = mcts.suggest(board);
+            assertTrue(board.touches(color));
+            board.flood(color);
+        }
+    }
+
+    @Test
+    public void testFloodHarness()
+    {
+        java.util.Random seeds = new java.util.Random(33);
+        for (int size = 1; size <= 12; size++)
+            FloodHarness.check(size, seeds.nextLong());
+    }
+
+    @Test
+    public void testCoordCollections()
+    {
+        java.util.Random gen = new java.util.Random(34);
+        java.util.Map<Coord, Integer> expected = new java.util.HashMap<>();
+        CoordMap<Integer> map = new CoordMap<>(2);
+        for (int i = 0; i < 20000; i++)
+        {
+            Coord coord = new Coord(gen.nextInt(40), gen.nextInt(40));
+            if (gen.nextInt(3) == 0)
+            {
+                Integer old = expected.remove(coord);
+                assertEquals(old, map.remove(coord));
+            }
+            else
+            {
+                Integer old = expected.put(coord, i);
+                assertEquals(old, map.put(coord, i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int y = 0; y < 40; y++)
+            for (int x = 0; x < 40; x++) {
+                Coord coord = new Coord(x, y);
+                assertEquals(expected.get(coord), map.get(coord));
+                assertEquals(expected.containsKey(coord), map.containsKey(coord));
+            }
+        int sum = 0;
+        for (int value : map.values())
+            sum += value;
+        assertEquals(expected.values().stream().mapToInt(Integer::intValue).sum(), sum);
+        assertNull(map.get(new Coord(-1, 0)));
+    }
+
+    @Test
+    public void testLargeBoard() throws java.io.IOException
+    {
+        for (long seed = 0; seed < 20; seed++)
+        {
+            FloodHarness.check(1 + (int) seed, seed);
+        }
+
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("board", ".flood");
+        try
+        {
+            PackedBoard expected = new PackedBoard(40, 35);
+            LargeBoard board = LargeBoard.create(file, 40, 35);
+            for (int i = 0; i < 5; i++)
+            {
+                WaterColor color = board.suggest();
+                assertNotEquals(board.getRegionColor(), color);
+                expected.flood(color);
+                board.flood(color);
+            }
+            WaterColor next = board.suggest();
+            board.close();
+
+            board = LargeBoard.open(file);
+            assertEquals(40, board.getSize());
+            assertEquals(5, board.getMoves());
+            assertEquals(expected.getFloodedCount(), board.getFloodedCount());
+            assertEquals(expected, board.toPackedBoard());
+            assertEquals(next, board.suggest());
+            board.close();
+        }
+        finally
+        {
+            java.nio.file.Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEvaluate()
+    {
+        Board board = new Board(12, 36);
+        board.flood(WaterColor.pickOne(new java.util.Random(36)));
+        long state = board.stateHash();
+        java.util.Random gen = new java.util.Random(36);
+        WaterColor[][] sequences = new WaterColor[200][];
+        int[] expected = new int[sequences.length];
+        for (int i = 0; i < sequences.length; i++)
+        {
+            // short sequences over few colors, so that many share prefixes
+            sequences[i] = new WaterColor[gen.nextInt(12)];
+            PackedBoard packed = board.pack();
+            for (int k = 0; k < sequences[i].length; k++)
+            {
+                sequences[i][k] = WaterColor.values()[gen.nextInt(3)];
+                packed.flood(sequences[i][k]);
+            }
+            expected[i] = packed.getFloodedCount();
+            assertEquals(expected[i], board.evaluate(sequences[i]));
+        }
+        assertArrayEquals(expected, board.evaluate(sequences));
+        assertEquals(state, board.stateHash());
+
+        WaterColor move = board.suggest();
+        int after = board.evaluate(new WaterColor[] { move });
+        board.flood(move);
+        assertEquals(after, board.evaluate(new WaterColor[0]));
+    }
+
+    @Test
+    public void testGeneticSolver() throws Exception
+    {
+        PackedBoard start = new PackedBoard(10, 37);
+        GeneticSolver solver = new GeneticSolver(start, 16, 37);
+        assertEquals(0, solver.getBest().length);
+        // Out of time, solve() seeds a single game and evolves nothing.
+        WaterColor[] first = solver.solve(0);
+        assertTrue(first.length > 0);
+        assertEquals(0, solver.getGenerations());
+        WaterColor[] solution = solver.solveInBackground(50).get();
+        assertTrue(solver.getGenerations() > 0);
+        assertTrue(solution.length <= first.length);
+
+        PackedBoard board = new PackedBoard(start);
+        for (WaterColor color : solution)
+        {
+            assertFalse(board.fullyFlooded());
+            board.flood(color);
+        }
+        assertTrue(board.fullyFlooded());
+    }
+
+    @Test
+    public void testSolutionDatabase() throws java.io.IOException
+    {
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("solutions");
+        try
+        {
+            PackedBoard board = new PackedBoard(10, 38);
+            WaterColor[] solution = new GeneticSolver(board, 8, 38).solve(0);
+            SolutionDatabase db = SolutionDatabase.open(dir);
+            assertEquals(solution, db.solve(board, b -> solution));
+            assertEquals(solution.length, db.getLength(board.fingerprint()));
+            assertFalse(db.put(board.fingerprint(), solution));
+            WaterColor[] shorter = java.util.Arrays.copyOf(solution, solution.length - 1);
+            assertTrue(db.put(board.fingerprint(), shorter));
+            for (long fingerprint = 1; fingerprint <= 3000; fingerprint++)
+            {
+                WaterColor[] moves = new WaterColor[(int) fingerprint % 7];
+                java.util.Arrays.fill(moves, WaterColor.BLUE);
+                db.put(fingerprint, moves);
+            }
+            assertEquals(3001, db.size());
+            db.close();
 
+            // A torn record at the end of the log is cut off on reopening.
+            java.nio.file.Files.write(dir.resolve("solutions.log"), new byte[] { 0, 0, 0, 0, 0, 0, 0, 42, 0, 0 },
+                    java.nio.file.StandardOpenOption.APPEND);
+            db = SolutionDatabase.open(dir);
+            assertEquals(java.util.Arrays.asList(shorter), java.util.Arrays.asList(db.get(board.fingerprint())));
+            assertEquals(2999 % 7, db.getLength(2999));
+            assertNull(db.get(-42));
+            db.close();
 
-}
\ No newline at end of file
+            // A lost index is rebuilt from the log.
+            java.nio.file.Files.delete(dir.resolve("solutions.idx"));
+            db = SolutionDatabase.open(dir);
+            assertEquals(3001, db.size());
+            assertEquals(shorter.length, db.getLength(board.fingerprint()));
+            db.close();
+        }
+        finally
+        {
+            for (java.io.File file : dir.toFile().listFiles())
+            {
+                file.delete();
+            }
+            java.nio.file.Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testBoardChanges()
+    {
+        Board board = new Board(9, 39);
+        java.util.List<String> seen = new java.util.ArrayList<>();
+        BoardListener listener = change -> {
+            seen.add(change.isReset() ? "reset" : change.getColor() + " " + change.getRecoloredCount()
+                    + " " + change.getAbsorbedCount());
+        };
+        board.addListener(listener);
+        java.util.Random gen = new java.util.Random(39);
+        for (int k = 0; k < 3; k++)
+        {
+            while (!board.fullyFlooded())
+            {
+                PackedBoard before = board.pack();
+                WaterColor color = WaterColor.pickOne(gen);
+                int[] changed = new int[1];
+                BoardListener check = change -> {
+                    assertEquals(color, change.getColor());
+                    PackedBoard after = board.pack();
+                    for (int i = 0; i < change.getRecoloredCount(); i++)
+                    {
+                        int index = change.getRecolored(i);
+                        assertTrue(before.isFlooded(index % 9, index / 9));
+                        assertFalse(before.getColor(index % 9, index / 9) == color);
+                    }
+                    for (int i = 0; i < change.getAbsorbedCount(); i++)
+                    {
+                        int index = change.getAbsorbed(i);
+                        assertFalse(before.isFlooded(index % 9, index / 9));
+                        assertTrue(after.isFlooded(index % 9, index / 9));
+                    }
+                    assertEquals(after.getFloodedCount() - before.getFloodedCount(), change.getAbsorbedCount());
+                    int recolored = color == before.getRegionColor() ? 0 : before.getFloodedCount();
+                    assertEquals(recolored, change.getRecoloredCount());
+                    changed[0]++;
+                };
+                board.addListener(check);
+                if (k == 0)
+                    board.flood(color);
+                else if (k == 1)
+                    board.flood1(color);
+                else
+                    board.flood2(color);
+                board.removeListener(check);
+                assertEquals(1, changed[0]);
+            }
+            board.reset(k);
+        }
+        assertEquals("reset", seen.get(seen.size() - 1));
+        board.removeListener(listener);
+        int moves = seen.size();
+        board.flood(WaterColor.pickOne(gen));
+        assertEquals(moves, seen.size());
+    }
+
+    @Test
+    public void testSnapshots() throws InterruptedException
+    {
+        Board board = new Board(40, 40);
+        java.util.Map<Long, PackedBoard> expected = new java.util.HashMap<>();
+        java.util.Map<Long, PackedBoard> seen = new java.util.concurrent.ConcurrentHashMap<>();
+        java.util.concurrent.atomic.AtomicBoolean done = new java.util.concurrent.atomic.AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            while (!done.get())
+            {
+                BoardSnapshot snapshot = board.snapshot();
+                seen.putIfAbsent(snapshot.getVersion(), snapshot.pack());
+            }
+        });
+        reader.start();
+        // Wait for the reader to see a version before play and the last one after
+        // it, so that it sees at least two however the threads are scheduled.
+        while (seen.isEmpty())
+        {
+            Thread.sleep(1);
+        }
+
+        BoardSnapshot first = board.snapshot();
+        PackedBoard firstPacked = board.pack();
+        java.util.Random gen = new java.util.Random(40);
+        for (int game = 0; game < 3; game++)
+        {
+            while (!board.fullyFlooded())
+            {
+                board.flood(WaterColor.pickOne(gen));
+                expected.put(board.snapshot().getVersion(), board.pack());
+                assertEquals(board.pack().getFloodedCount(), board.snapshot().getFloodedCount());
+            }
+            board.reset(game);
+            expected.put(board.snapshot().getVersion(), board.pack());
+        }
+        while (!seen.containsKey(board.snapshot().getVersion()))
+        {
+            Thread.sleep(1);
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(firstPacked, first.pack());
+        assertTrue(seen.size() > 1);
+        for (java.util.Map.Entry<Long, PackedBoard> entry : seen.entrySet())
+        {
+            if (expected.containsKey(entry.getKey()))
+            {
+                assertEquals(expected.get(entry.getKey()), entry.getValue());
+            }
+        }
+
+        // Until asked, moves publish nothing, but the first call, from any thread,
+        // still sees the last move; after that, every move publishes.
+        Board quiet = new Board(10, 10);
+        quiet.flood(WaterColor.pickOne(gen));
+        quiet.flood(WaterColor.pickOne(gen));
+        BoardSnapshot[] asked = new BoardSnapshot[1];
+        Thread asker = new Thread(() -> asked[0] = quiet.snapshot());
+        asker.start();
+        asker.join();
+        assertEquals(quiet.pack(), asked[0].pack());
+        quiet.flood(WaterColor.pickOne(gen));
+        assertEquals(quiet.pack(), quiet.snapshot().pack());
+        assertTrue(quiet.snapshot().getVersion() > asked[0].getVersion());
+    }
+
+    @Test
+    public void testFootprint()
+    {
+        // Retained sizes on the real heap depend on System.gc() collecting, so the
+        // measurement is checked against readings that do not.
+        long[] readings = { 1000, 1000 + 4 * 300 };
+        int[] read = { 0 };
+        assertEquals(300, FootprintReport.retainedBytes(() -> new byte[1], 4, () -> readings[read[0]++]));
+        assertEquals(2, read[0]);
+        assertEquals(0, FootprintReport.retainedBytes(() -> null, 4, () -> 1000 - read[0]++));
+
+        long before = FootprintReport.allocatedBytes();
+        new Board(16, 41);
+        if (before >= 0)
+        {
+            assertTrue(FootprintReport.allocatedBytes() - before >= 16 * 16);
+            // A 512x512 board keeps a byte per cell, so takes at least that much.
+            long allocated = FootprintReport.retainedBytes(() -> new PackedBoard(512, 41), 4, FootprintReport::allocatedBytes);
+            assertTrue(allocated >= 512 * 512);
+        }
+
+        FootprintReport report = new FootprintReport();
+        report.addRetained("PackedBoard", 512, 512 * 512 + 64);
+        report.addAllocated("Board", 16, 100, 1000);
+        String table = report.toString();
+        assertEquals(3, table.split("\n").length);
+        assertTrue(table.contains("1000"));
+    }
+
+    @Test
+    public void testTournament()
+    {
+        Tournament tournament = new Tournament(java.util.Arrays.asList(Strategies.SOBER, new GreedyStrategy(1)), 4, 41);
+        java.util.List<Tournament.Result> results = tournament.play(6);
+        assertEquals(2, results.size());
+        for (Tournament.Result result : results)
+        {
+            assertEquals(6, result.getSize());
+            assertTrue(result.getWinRate() >= 0 && result.getWinRate() <= 1);
+            assertTrue(result.getMeanMoves() > 0 && result.getMeanMoves() <= 2 * Game.getStepLimit(6));
+            assertTrue(result.getCpuMillisPerMove() >= 0);
+        }
+        assertEquals("greedy-1", results.get(1).getStrategy());
+        tournament.play(4);
+        assertEquals(4, tournament.getResults().size());
+        assertEquals(5, tournament.toString().split("\n").length);
+    }
+
+    @Test
+    public void testOpCountsLinearPerGame()
+    {
+        // Absorbing a tile takes two map updates plus one lookup per neighbor not on
+        // the perimeter yet, and every tile joins the perimeter at most once, so the
+        // map operations and pushes of a whole game are linear in the board's area.
+        // Visits are too, apart from recoloring the region once per move.
+        long previous = 0;
+        for (int size = 16; size <= 128; size *= 2)
+        {
+            Board board = new Board(size, 41);
+            OpCounts ops = board.getOpCounts();
+            ops.clear();
+            long area = size * size, regions = 0;
+            while (!board.fullyFlooded())
+            {
+                board.flood(Strategies.SOBER.suggest(board));
+                long outside = 0;
+                for (WaterColor color : WaterColor.values())
+                {
+                    outside += board.countOutside(color);
+                }
+                regions += area - outside;
+            }
+            assertTrue(ops.toString(), ops.getMapOps() <= 6 * area);
+            assertTrue(ops.toString(), ops.getPushes() <= area);
+            assertTrue(ops.toString(), ops.getVisits() <= regions + 5 * area);
+
+            // Doubling the size quadruples the area, and so the work besides
+            // recoloring; scanning the board on every move would multiply it by 8.
+            long total = ops.getMapOps() + ops.getPushes() + ops.getVisits() - regions;
+            if (previous > 0)
+            {
+                assertTrue(ops.toString(), total <= 5 * previous);
+            }
+            previous = total;
+        }
+    }
+
+    @Test
+    public void testOpCountsPerMove()
+    {
+        // Per move, with r tiles in the region afterwards of which a were absorbed:
+        // flood recolors the old region and spends at most 15 operations per absorbed
+        // tile; flood1 also queues each region tile once and looks up its neighbors;
+        // flood2 probes each tile a bounded number of times; PackedBoard pushes each
+        // region cell once and visits its neighbors.
+        for (int engine = 0; engine < 3; engine++)
+        {
+            Board board = new Board(48, 43);
+            PackedBoard packed = new PackedBoard(48, 43);
+            OpCounts ops = board.getOpCounts();
+            while (!board.fullyFlooded())
+            {
+                WaterColor color = Strategies.SOBER.suggest(board);
+                long r0 = board.pack().getFloodedCount();
+                long before = ops.getTotal();
+                if (engine == 0)
+                {
+                    board.flood(color);
+                }
+                else if (engine == 1)
+                {
+                    board.flood1(color);
+                }
+                else
+                {
+                    board.flood2(color);
+                }
+                long r = board.pack().getFloodedCount();
+                long a = r - r0;
+                long spent = ops.getTotal() - before;
+                long bound = engine == 0 ? r + 15 * a : engine == 1 ? 11 * r + 15 * a : 20 * r + 15 * a;
+                assertTrue(engine + ": " + spent + " > " + bound, spent <= bound);
+
+                long visits = packed.getOpCounts().getVisits();
+                long pushes = packed.getOpCounts().getPushes();
+                packed.floodSequential(color);
+                assertTrue(packed.getOpCounts().getVisits() - visits <= 4 * r);
+                assertEquals(r, packed.getOpCounts().getPushes() - pushes);
+            }
+        }
+    }
+
+    @Test
+    public void testPuzzleGenerator()
+    {
+        PuzzleGenerator generator = new PuzzleGenerator(8, 12, 13, 41);
+        java.util.List<PuzzleGenerator.Puzzle> puzzles = generator.generate(20, 1 << 16);
+        assertEquals(20, puzzles.size());
+        assertTrue(generator.getCandidates() >= 20);
+        assertTrue(generator.getHits() >= 20);
+        for (PuzzleGenerator.Puzzle puzzle : puzzles)
+        {
+            assertTrue(puzzle.getMoves() >= 12 && puzzle.getMoves() <= 13);
+            assertTrue(puzzle.getLowerBound() <= puzzle.getMoves());
+            Board board = puzzle.toBoard();
+            for (WaterColor color : puzzle.getSolution())
+            {
+                assertFalse(board.fullyFlooded());
+                board.flood(color);
+            }
+            assertTrue(board.fullyFlooded());
+        }
+
+        java.util.List<PuzzleGenerator.Puzzle> again = new PuzzleGenerator(8, 12, 13, 41).generate(20, 1 << 16);
+        for (int i = 0; i < puzzles.size(); i++)
+        {
+            assertEquals(puzzles.get(i).getSeed(), again.get(i).getSeed());
+        }
+
+        // Splitting one call in two gives the same puzzles.
+        PuzzleGenerator split = new PuzzleGenerator(8, 12, 13, 41);
+        java.util.List<PuzzleGenerator.Puzzle> halves = new java.util.ArrayList<>(split.generate(1, 1 << 16));
+        halves.addAll(split.generate(puzzles.size() - 1, 1 << 16));
+        assertEquals(puzzles.size(), halves.size());
+        for (int i = 0; i < puzzles.size(); i++)
+        {
+            assertEquals(puzzles.get(i).getSeed(), halves.get(i).getSeed());
+        }
+        assertTrue(new PuzzleGenerator(8, 1, 2, 41).generate(1, 2048).isEmpty());
+    }
+
+    @Test
+    public void testBoardBatch()
+    {
+        // 70 games fill one long of each plane and part of another.
+        long[] seeds = new long[70];
+        for (int g = 0; g < seeds.length; g++)
+        {
+            seeds[g] = 1000 + g;
+        }
+        BoardBatch batch = new BoardBatch(7, seeds);
+        PackedBoard[] boards = new PackedBoard[seeds.length];
+        for (int g = 0; g < seeds.length; g++)
+        {
+            boards[g] = new PackedBoard(7, seeds[g]);
+            assertEquals(boards[g], batch.toPackedBoard(g));
+        }
+        java.util.Random gen = new java.util.Random(41);
+        WaterColor[] colors = new WaterColor[seeds.length];
+        while (!batch.allFlooded())
+        {
+            for (int g = 0; g < seeds.length; g++)
+            {
+                colors[g] = WaterColor.pickOne(gen);
+                if (!boards[g].fullyFlooded())
+                {
+                    boards[g].flood(colors[g]);
+                }
+            }
+            batch.flood(colors);
+            for (int g = 0; g < seeds.length; g++)
+            {
+                assertEquals(boards[g], batch.toPackedBoard(g));
+                assertEquals(boards[g].fullyFlooded(), batch.fullyFlooded(g));
+            }
+        }
+
+        // Autoplay makes the moves of Strategies.SOBER.
+        batch = new BoardBatch(9, seeds);
+        batch.autoplay(Integer.MAX_VALUE);
+        for (int g = 0; g < seeds.length; g++)
+        {
+            Board board = new Board(9, seeds[g]);
+            int moves = 0;
+            while (!board.fullyFlooded())
+            {
+                board.flood(Strategies.SOBER.suggest(board));
+                moves++;
+            }
+            assertEquals(moves, batch.getMoves(g));
+            assertEquals(board.get(Coord.ORIGIN).getColor(), batch.getRegionColor(g));
+        }
+    }
+
+    @Test
+    public void testCellLayout()
+    {
+        // 13 is not a multiple of the tile side nor a power of two, so there is padding.
+        for (int size : new int[] { 1, 8, 13, 16 })
+        {
+            for (CellLayout layout : CellLayout.values())
+            {
+                PackedBoard expected = new PackedBoard(size, size);
+                PackedBoard board = new PackedBoard(size, size, layout);
+                PackedBoard parallel = new PackedBoard(size, size, layout);
+                assertEquals(layout, board.getLayout());
+                assertEquals(expected, board);
+                assertEquals(expected, new PackedBoard(expected, layout));
+                int[] expectedCounts = new int[WaterColor.values().length];
+                int[] counts = new int[expectedCounts.length];
+                java.util.Random gen = new java.util.Random(size);
+                while (!expected.fullyFlooded())
+                {
+                    WaterColor color = WaterColor.pickOne(gen);
+                    assertEquals(expected.floodSequential(color), board.floodSequential(color));
+                    parallel.floodParallel(color);
+                    assertEquals(expected, board);
+                    assertEquals(expected, parallel);
+                    assertEquals(expected.hashCode(), board.hashCode());
+                    assertEquals(expected.fingerprint(), board.fingerprint());
+                    assertEquals(expected.countOutsideColors(), board.countOutsideColors());
+                    expected.countFrontier(expectedCounts);
+                    board.countFrontier(counts);
+                    assertArrayEquals(expectedCounts, counts);
+                }
+                assertTrue(board.fullyFlooded());
+            }
+        }
+    }
+
+    @Test
+    public void testMultiRegionBoard()
+    {
+        // One region in the corner plays exactly as Board.
+        Board board = new Board(12, 7);
+        MultiRegionBoard multi = new MultiRegionBoard(12, 7);
+        assertEquals(0, multi.addRegion(Coord.ORIGIN));
+        int[] counts = new int[WaterColor.values().length];
+        java.util.Random gen = new java.util.Random(7);
+        while (true)
+        {
+            for (int y = 0; y < 12; y++)
+            {
+                for (int x = 0; x < 12; x++)
+                {
+                    Coord coord = new Coord(x, y);
+                    assertEquals(board.isFlooded(coord) ? 0 : -1, multi.getOwner(x, y));
+                    assertEquals(board.get(coord).getColor(), multi.getColor(x, y));
+                }
+            }
+            multi.countFrontier(0, counts);
+            for (WaterColor color : WaterColor.values())
+            {
+                assertEquals(board.countFrontier(color), counts[color.ordinal()]);
+            }
+            if (board.fullyFlooded())
+            {
+                break;
+            }
+            WaterColor color = WaterColor.pickOne(gen);
+            board.flood(color);
+            multi.flood(0, color);
+        }
+        assertTrue(multi.fullyOwned());
+
+        // Two corners and many more regions share a board until nothing is left.
+        int size = 30;
+        multi = new MultiRegionBoard(size, 11);
+        multi.addRegion(Coord.ORIGIN);
+        multi.addRegion(new Coord(size - 1, size - 1));
+        while (multi.getRegionCount() < 40)
+        {
+            int x = gen.nextInt(size), y = gen.nextInt(size);
+            if (multi.getOwner(x, y) < 0)
+            {
+                multi.addRegion(new Coord(x, y));
+            }
+        }
+        try
+        {
+            multi.addRegion(Coord.ORIGIN);
+            fail("the corner already has a region");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        for (int move = 0; !multi.fullyOwned(); move++)
+        {
+            assertTrue(move < 100 * size * size);
+            int r = move % multi.getRegionCount();
+            multi.flood(r, multi.suggest(r, counts));
+
+            int owned = 0;
+            for (r = 0; r < multi.getRegionCount(); r++)
+            {
+                owned += multi.getRegionSize(r);
+            }
+            assertEquals(owned, multi.getOwnedCount());
+            for (int y = 0; y < size; y++)
+            {
+                for (int x = 0; x < size; x++)
+                {
+                    int owner = multi.getOwner(x, y);
+                    if (owner >= 0)
+                    {
+                        assertEquals(multi.getRegionColor(owner), multi.getColor(x, y));
+                        continue;
+                    }
+                    // A region never leaves an unowned cell of its own color next to it.
+                    for (Coord neighbor : new Coord(x, y).neighbors(size))
+                    {
+                        int other = multi.getOwner(neighbor.getX(), neighbor.getY());
+                        assertTrue(other < 0 || multi.getRegionColor(other) != multi.getColor(x, y));
+                    }
+                }
+            }
+        }
+
+        // Every cell was claimed once, and a claim costs at most 4 entries and 8 visits.
+        OpCounts ops = multi.getOpCounts();
+        assertTrue(ops.getPushes() <= 4L * size * size);
+        assertTrue(ops.getVisits() <= 8L * size * size);
+    }
+
+    @Test
+    public void testLowerBound()
+    {
+        for (int size : new int[] { 1, 2, 5, 9, 14 })
+        {
+            Board board = new Board(size, 0);
+            for (long seed = 0; seed < 10; seed++)
+            {
+                board.reset(seed);
+                java.util.List<Integer> bounds = new java.util.ArrayList<>();
+                for (int move = 0; ; move++)
+                {
+                    // The first games of each size ask for the bound only a few moves in.
+                    if (move < 3 - seed && !board.fullyFlooded())
+                    {
+                        board.flood(Strategies.SOBER.suggest(board));
+                        bounds.add(null);
+                        continue;
+                    }
+
+                    // Recompute the bound from scratch: a 0-1 search in which a step
+                    // to a tile of another color costs a move.
+                    int[] distance = new int[size * size];
+                    java.util.Arrays.fill(distance, Integer.MAX_VALUE);
+                    java.util.Deque<Coord> deque = new java.util.ArrayDeque<>();
+                    for (int i = 0; i < size * size; i++)
+                    {
+                        Coord coord = new Coord(i % size, i / size);
+                        if (board.isFlooded(coord))
+                        {
+                            distance[i] = 0;
+                            deque.add(coord);
+                        }
+                    }
+                    int depth = 0;
+                    while (!deque.isEmpty())
+                    {
+                        Coord coord = deque.poll();
+                        int d = distance[coord.getY() * size + coord.getX()];
+                        depth = Math.max(depth, d);
+                        for (Coord neighbor : coord.neighbors(size))
+                        {
+                            int step = board.get(neighbor).getColor() == board.get(coord).getColor() ? 0 : 1;
+                            int j = neighbor.getY() * size + neighbor.getX();
+                            if (d + step < distance[j])
+                            {
+                                distance[j] = d + step;
+                                if (step == 0)
+                                {
+                                    deque.addFirst(neighbor);
+                                }
+                                else
+                                {
+                                    deque.addLast(neighbor);
+                                }
+                            }
+                        }
+                    }
+                    assertEquals(Math.max(depth, board.countOutsideColors()), board.getLowerBound());
+                    bounds.add(board.getLowerBound());
+                    if (board.fullyFlooded())
+                    {
+                        break;
+                    }
+                    // Every flood function keeps the bound up to date.
+                    WaterColor color = Strategies.SOBER.suggest(board);
+                    if (move % 3 == 0)
+                    {
+                        board.flood(color);
+                    }
+                    else if (move % 3 == 1)
+                    {
+                        board.flood1(color);
+                    }
+                    else
+                    {
+                        board.flood2(color);
+                    }
+                }
+
+                // The bound never exceeds the moves actually left, and a move lowers it by one at most.
+                int moves = bounds.size() - 1;
+                for (int t = 0; t <= moves; t++)
+                {
+                    if (bounds.get(t) != null)
+                    {
+                        assertTrue(bounds.get(t) <= moves - t);
+                        assertTrue(t == 0 || bounds.get(t - 1) == null || bounds.get(t) >= bounds.get(t - 1) - 1);
+                    }
+                }
+            }
+        }
+    }
+}
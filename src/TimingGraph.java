@@ -1,8 +1,10 @@
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.RenderingHints;
 import java.awt.geom.*;
 import java.awt.font.*;
@@ -17,22 +19,53 @@ import javax.swing.JPanel;
 
 /**
  * Support class to display a graph of the runtime data.
+ *
+ * The graph is rendered straight onto any Graphics2D, so it can be written to an
+ * image without a display (in headless mode only the image is produced). Either
+ * axis may be logarithmic. Series with more points than there are pixel columns
+ * are downsampled to the minimum and maximum of every column, and series that
+ * carry percentile bands have them shaded behind their line.
  */
 
 public class TimingGraph extends JPanel {
-  private int numRuns;
-  private List<List<Integer>> timings;
+  private static final int MARGIN = 48;
+  private static final Color[] PALETTE = {
+    Color.RED, Color.BLUE, Color.GREEN.darker(), Color.MAGENTA.darker(), Color.ORANGE.darker(), Color.CYAN.darker(), Color.GRAY
+  };
+
+  private List<TimingSeries> timings;
+  private boolean logX, logY;
+  private double minX, maxX, minY, maxY;
+
+  /**
+   * Constructs a panel on which we can paint a graph of the given timing data,
+   * using linear axes, and shows it (if possible) and writes it to an image file.
+   */
+  public TimingGraph(List<TimingSeries> timings) {
+    this(timings, false, false);
+    showAndTell();
+  }
 
   /**
-   * Constructs a panel on which we can paint a graph of the given timing data.
+   * Constructs a panel on which we can paint a graph of the given timing data
+   * with the given axis scales. Nothing is shown or written.
    */
-  public TimingGraph(List<List<Integer>> timings) {
+  public TimingGraph(List<TimingSeries> timings, boolean logX, boolean logY) {
     assert timings.size() > 0;
     this.timings = timings;
+    this.logX = logX;
+    this.logY = logY;
     setBackground(Color.WHITE);
     setOpaque(true);
-    numRuns = timings.get(0).size();
-    showAndTell();
+    computeBounds();
+  }
+
+  /**
+   * Renders the given timing data into an image of the given dimension and writes
+   * it as a png to the given file. Works in headless mode.
+   */
+  public static void write(List<TimingSeries> timings, boolean logX, boolean logY, int w, int h, File file) throws IOException {
+    ImageIO.write(new TimingGraph(timings, logX, logY).toImage(w, h), "png", file);
   }
 
   /**
@@ -40,93 +73,296 @@ public class TimingGraph extends JPanel {
    */
   public void paintComponent(Graphics g) {
     super.paintComponent(g);
-    Graphics2D g2 = (Graphics2D) g;
+    render((Graphics2D) g, getWidth(), getHeight());
+  }
+
+  /**
+   * Returns a fresh image of the given dimension holding the graph.
+   */
+  public BufferedImage toImage(int w, int h) {
+    BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g2 = image.createGraphics();
+    render(g2, w, h);
+    g2.dispose();
+    return image;
+  }
+
+  /**
+   * Renders the graph onto g2 within a w x h area.
+   */
+  public void render(Graphics2D g2, int w, int h) {
     g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-    int w = getWidth();
-    int h = getHeight();
+    g2.setPaint(Color.WHITE);
+    g2.fillRect(0, 0, w, h);
+    int plotW = w - 2 * MARGIN;
+    int plotH = h - 2 * MARGIN;
+    if (plotW <= 0 || plotH <= 0)
+      return;
+    drawAxes(g2, w, h);
+    for (int s = 0; s < timings.size(); s++) {
+      TimingSeries run = timings.get(s);
+      Color color = PALETTE[s % PALETTE.length];
+      if (run.hasBand()) {
+        g2.setPaint(new Color(color.getRed(), color.getGreen(), color.getBlue(), 48));
+        g2.fill(bandPath(run, h, plotW));
+      }
+      g2.setPaint(color);
+      g2.setStroke(new BasicStroke(1.5f));
+      g2.draw(linePath(run, h, plotW));
+      // Mark data points with small circles, but only while they are not crowded.
+      if (run.size() <= plotW / 8) {
+        Ellipse2D.Double dot = new Ellipse2D.Double();
+        for (int i = 0; i < run.size(); i++) {
+          dot.setFrame(px(run.getX(i), w) - 2, py(run.getMid(i), h) - 2, 4, 4);
+          g2.fill(dot);
+        }
+      }
+    }
+    g2.setStroke(new BasicStroke(1f));
+    drawLegend(g2);
+  }
+
+  /**
+   * Returns the line through the central values of the run. Points falling into
+   * the same pixel column are reduced to the first, min, max and last of them, so
+   * the path has at most four vertices per column however many points there are.
+   */
+  private Path2D linePath(TimingSeries run, int h, int plotW) {
+    Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO, Math.min(run.size(), 4 * plotW) + 1);
+    int i = 0;
+    while (i < run.size()) {
+      int col = (int) px(run.getX(i), plotW + 2 * MARGIN);
+      double first = py(run.getMid(i), h);
+      double min = first, max = first, last = first;
+      int j = i + 1;
+      for (; j < run.size() && (int) px(run.getX(j), plotW + 2 * MARGIN) == col; j++) {
+        last = py(run.getMid(j), h);
+        min = Math.min(min, last);
+        max = Math.max(max, last);
+      }
+      if (i == 0)
+        path.moveTo(col, first);
+      else
+        path.lineTo(col, first);
+      if (j - i > 1) {
+        path.lineTo(col, min);
+        path.lineTo(col, max);
+        path.lineTo(col, last);
+      }
+      i = j;
+    }
+    return path;
+  }
+
+  /**
+   * Returns the closed outline of the run's percentile band, downsampled per pixel
+   * column to the lowest low and the highest high.
+   */
+  private Path2D bandPath(TimingSeries run, int h, int plotW) {
+    int w = plotW + 2 * MARGIN;
+    double[] cols = new double[run.size()];
+    double[] tops = new double[run.size()];
+    double[] bottoms = new double[run.size()];
+    int m = 0;
+    for (int i = 0; i < run.size(); i++) {
+      double col = (int) px(run.getX(i), w);
+      double top = py(run.getHigh(i), h);
+      double bottom = py(run.getLow(i), h);
+      if (m > 0 && cols[m - 1] == col) {
+        tops[m - 1] = Math.min(tops[m - 1], top);
+        bottoms[m - 1] = Math.max(bottoms[m - 1], bottom);
+      }
+      else {
+        cols[m] = col;
+        tops[m] = top;
+        bottoms[m] = bottom;
+        m++;
+      }
+    }
+    Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO, 2 * m + 1);
+    path.moveTo(cols[0], tops[0]);
+    for (int i = 1; i < m; i++)
+      path.lineTo(cols[i], tops[i]);
+    for (int i = m - 1; i >= 0; i--)
+      path.lineTo(cols[i], bottoms[i]);
+    path.closePath();
+    return path;
+  }
+
+  /**
+   * Draws both axes with their labels and a few tick marks.
+   */
+  private void drawAxes(Graphics2D g2, int w, int h) {
+    g2.setPaint(Color.BLACK);
+    Line2D.Double line = new Line2D.Double();
     // Draw y-axis
-    g2.draw(new Line2D.Double(numRuns, numRuns, numRuns, h - numRuns));
+    line.setLine(MARGIN, MARGIN, MARGIN, h - MARGIN);
+    g2.draw(line);
     // Draw x-axis
-    g2.draw(new Line2D.Double(numRuns, h - numRuns, w - numRuns, h - numRuns));
-    // Draw labels
-    Font font = g2.getFont();
+    line.setLine(MARGIN, h - MARGIN, w - MARGIN, h - MARGIN);
+    g2.draw(line);
+    Font font = g2.getFont().deriveFont(10f);
+    g2.setFont(font);
     FontRenderContext frc = g2.getFontRenderContext();
     LineMetrics lm = font.getLineMetrics("0", frc);
-    float sh = lm.getAscent() + lm.getDescent();
-    // Draw label on the y-axis
-    String s = "time";
-    float sy = numRuns + ((h - 2 * numRuns) - s.length() * sh) / 2 + lm.getAscent();
-    for (int i = 0; i < s.length(); i++) {
-      String letter = String.valueOf(s.charAt(i));
-      float sw = (float) font.getStringBounds(letter, frc).getWidth();
-      float sx = (numRuns - sw) / 2;
-      g2.drawString(letter, sx, sy);
-      sy += sh;
+    // Draw ticks on both axes
+    for (double t : ticks(minX, maxX, logX)) {
+      double x = px(t, w);
+      line.setLine(x, h - MARGIN, x, h - MARGIN + 4);
+      g2.draw(line);
+      String s = format(t);
+      g2.drawString(s, (float) (x - font.getStringBounds(s, frc).getWidth() / 2), h - MARGIN + 6 + lm.getAscent());
     }
-    // Draw label on the x-axis
-    s = "board size";
-    sy = h - numRuns + (numRuns - sh) / 2 + lm.getAscent();
+    for (double t : ticks(minY, maxY, logY)) {
+      double y = py(t, h);
+      line.setLine(MARGIN - 4, y, MARGIN, y);
+      g2.draw(line);
+      String s = format(t);
+      g2.drawString(s, (float) (MARGIN - 6 - font.getStringBounds(s, frc).getWidth()), (float) y + lm.getAscent() / 2);
+    }
+    // Draw labels on both axes
+    String s = logY ? "time (ms, log)" : "time (ms)";
+    g2.drawString(s, 4, MARGIN - 8);
+    s = logX ? "board size (log)" : "board size";
     float sw = (float) font.getStringBounds(s, frc).getWidth();
-    float sx = (w - sw) / 2;
-    g2.drawString(s, sx, sy);
-    // Draw lines
-    double xInc = (double) (w - 2 * numRuns) / (timings.get(0).size() - 1);
-    double scale = (double) (h - 2 * numRuns) / getMax();
-    g2.setPaint(Color.GREEN.darker());
-    g2.setPaint(Color.RED);
-    for (List<Integer> run : timings) {
-      for (int i = 0; i < run.size() - 1; i++) {
-        double x1 = numRuns + i * xInc;
-        double y1 = h - numRuns - scale * run.get(i);
-        double x2 = numRuns + (i + 1) * xInc;
-        double y2 = h - numRuns - scale * run.get(i + 1);
-        g2.draw(new Line2D.Double(x1, y1, x2, y2));
-      }
-      // Mark data points with small circles
+    g2.drawString(s, (w - sw) / 2, h - MARGIN / 4f);
+  }
+
+  /**
+   * Draws a legend with one colored entry per series in the upper left corner of
+   * the plot.
+   */
+  private void drawLegend(Graphics2D g2) {
+    FontRenderContext frc = g2.getFontRenderContext();
+    LineMetrics lm = g2.getFont().getLineMetrics("0", frc);
+    float sh = lm.getAscent() + lm.getDescent() + 2;
+    float x = MARGIN + 8;
+    float y = MARGIN + 4;
+    Rectangle2D.Double swatch = new Rectangle2D.Double();
+    for (int s = 0; s < timings.size(); s++) {
+      g2.setPaint(PALETTE[s % PALETTE.length]);
+      swatch.setRect(x, y + s * sh + 2, 10, sh - 4);
+      g2.fill(swatch);
+      g2.setPaint(Color.BLACK);
+      g2.drawString(timings.get(s).getLabel(), x + 14, y + s * sh + lm.getAscent() + 1);
+    }
+  }
+
+  /**
+   * Computes the data bounds over all series (and bands). Log axes only consider
+   * positive values.
+   */
+  private void computeBounds() {
+    minX = minY = Double.POSITIVE_INFINITY;
+    maxX = maxY = Double.NEGATIVE_INFINITY;
+    for (TimingSeries run : timings)
       for (int i = 0; i < run.size(); i++) {
-        double x = numRuns + i * xInc;
-        double y = h - numRuns - scale * run.get(i);
-        g2.fill(new Ellipse2D.Double(x - 2, y - 2, 4, 4));
+        double x = run.getX(i);
+        if (!logX || x > 0) {
+          minX = Math.min(minX, x);
+          maxX = Math.max(maxX, x);
+        }
+        for (double y : new double[] { run.getLow(i), run.getHigh(i) })
+          if (!logY || y > 0) {
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+          }
       }
-      g2.setPaint(Color.LIGHT_GRAY);
+    if (minX > maxX) {
+      minX = logX ? 1 : 0;
+      maxX = minX + 1;
+    }
+    if (minY > maxY) {
+      minY = logY ? 1 : 0;
+      maxY = minY + 1;
     }
+    // Linear time axes start at zero, like the original graph.
+    if (!logY)
+      minY = Math.min(0, minY);
+    if (minX == maxX)
+      maxX = logX ? minX * 10 : minX + 1;
+    if (minY == maxY)
+      maxY = logY ? minY * 10 : minY + 1;
+  }
+
+  /**
+   * Maps a data x-value to a pixel column of a graph of width w.
+   */
+  private double px(double x, int w) {
+    return MARGIN + (w - 2 * MARGIN) * fraction(x, minX, maxX, logX);
   }
 
   /**
-   * Returns the largest value in the timing data.
+   * Maps a data y-value to a pixel row of a graph of height h.
    */
-  private int getMax() {
-    int max = Integer.MIN_VALUE;
-    for (List<Integer> run : timings)
-      for (int x : run)
-        max = Math.max(x, max);
-    return max;
+  private double py(double y, int h) {
+    return h - MARGIN - (h - 2 * MARGIN) * fraction(y, minY, maxY, logY);
+  }
+
+  private static double fraction(double v, double min, double max, boolean log) {
+    if (log) {
+      // Non-positive values are pinned to the bottom of a log axis.
+      v = Math.max(v, min);
+      return Math.log(v / min) / Math.log(max / min);
+    }
+    return (v - min) / (max - min);
   }
 
   /**
-   * Frames the graph of the timing data (and displays it) and also writes it to
-   * an image file.
+   * Returns tick positions: every decade on a log axis, otherwise about five
+   * round steps.
+   */
+  private static double[] ticks(double min, double max, boolean log) {
+    if (log) {
+      int lo = (int) Math.ceil(Math.log10(min));
+      int hi = (int) Math.floor(Math.log10(max));
+      double[] ans = new double[Math.max(0, hi - lo + 1)];
+      for (int i = 0; i < ans.length; i++)
+        ans[i] = Math.pow(10, lo + i);
+      return ans;
+    }
+    double raw = (max - min) / 5;
+    double step = Math.pow(10, Math.floor(Math.log10(raw)));
+    if (raw / step >= 5)
+      step *= 5;
+    else if (raw / step >= 2)
+      step *= 2;
+    double first = Math.ceil(min / step) * step;
+    double[] ans = new double[(int) Math.floor((max - first) / step + 1e-9) + 1];
+    for (int i = 0; i < ans.length; i++)
+      ans[i] = first + i * step;
+    return ans;
+  }
+
+  private static String format(double v) {
+    if (v == Math.rint(v) && Math.abs(v) < 1e9)
+      return String.valueOf((long) v);
+    if (Math.abs(v) < 1e-4)
+      return String.format("%.0e", v);
+    return new java.math.BigDecimal(String.format("%.3g", v)).stripTrailingZeros().toPlainString();
+  }
+
+  /**
+   * Writes the graph of the timing data to an image file and, unless running
+   * headless, frames and displays it.
    */
   private void showAndTell() {
-    // Show
-    JFrame frame = new JFrame();
-    frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-    frame.add(this);
-    frame.setPreferredSize(new Dimension(400, 400));
-    frame.setLocation(200, 200);
-    frame.pack();
-    frame.setVisible(true);    
-    Dimension dim = frame.getSize();
-    BufferedImage image = new BufferedImage(dim.width, dim.height, BufferedImage.TYPE_INT_ARGB);
-    Graphics g = image.createGraphics();
-    frame.paint(g);
-    g.dispose();
     // Tell
     try {
-      ImageIO.write(image, "png", new File(Constants.TEST_GRAPH));
+      ImageIO.write(toImage(Constants.GRAPH_WIDTH, Constants.GRAPH_HEIGHT), "png", new File(Constants.TEST_GRAPH));
     }
     catch (IOException e) {
       System.out.println("Unable to write graph to the file " + Constants.TEST_GRAPH);
     }
+    // Show
+    if (GraphicsEnvironment.isHeadless())
+      return;
+    JFrame frame = new JFrame();
+    frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+    frame.add(this);
+    frame.setPreferredSize(new Dimension(Constants.GRAPH_WIDTH, Constants.GRAPH_HEIGHT));
+    frame.setLocation(200, 200);
+    frame.pack();
+    frame.setVisible(true);
   }
 }
@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+/**
+ * TimingSeries holds the timings of one variant (e.g., one flood function) across
+ * a range of board sizes. Every point keeps a central value (the median of its
+ * samples) and, when more than one sample was taken, a percentile band around it.
+ */
+
+public class TimingSeries {
+  private String label;
+  private int n;
+  private double[] xs = new double[16];
+  private double[] mids = new double[16];
+  private double[] lows = new double[16];
+  private double[] highs = new double[16];
+  private double lowPercentile, highPercentile;
+
+  /**
+   * Constructs an empty series with the given legend label whose bands span the
+   * 10th to the 90th percentile.
+   */
+  public TimingSeries(String label) {
+    this(label, 10, 90);
+  }
+
+  /**
+   * Constructs an empty series with the given legend label whose bands span the
+   * given percentiles (0..100).
+   */
+  public TimingSeries(String label, double lowPercentile, double highPercentile) {
+    this.label = label;
+    this.lowPercentile = lowPercentile;
+    this.highPercentile = highPercentile;
+  }
+
+  /**
+   * Adds a single measured value at x.
+   */
+  public void add(double x, double value) {
+    add(x, value, value, value);
+  }
+
+  /**
+   * Adds a point at x summarizing the given samples by their median and band.
+   */
+  public void add(double x, double... samples) {
+    assert samples.length > 0;
+    double[] sorted = samples.clone();
+    Arrays.sort(sorted);
+    add(x, percentile(sorted, lowPercentile), percentile(sorted, 50), percentile(sorted, highPercentile));
+  }
+
+  private void add(double x, double low, double mid, double high) {
+    if (n == xs.length) {
+      xs = Arrays.copyOf(xs, 2 * n);
+      mids = Arrays.copyOf(mids, 2 * n);
+      lows = Arrays.copyOf(lows, 2 * n);
+      highs = Arrays.copyOf(highs, 2 * n);
+    }
+    xs[n] = x;
+    lows[n] = low;
+    mids[n] = mid;
+    highs[n] = high;
+    n++;
+  }
+
+  /**
+   * Returns the pth percentile (0..100) of the given sorted samples, interpolating
+   * linearly between neighboring ranks.
+   */
+  static double percentile(double[] sorted, double p) {
+    double rank = p / 100 * (sorted.length - 1);
+    int lo = (int) Math.floor(rank);
+    int hi = (int) Math.ceil(rank);
+    return sorted[lo] + (rank - lo) * (sorted[hi] - sorted[lo]);
+  }
+
+  /**
+   * Returns the legend label of this series.
+   */
+  public String getLabel() {
+    return label;
+  }
+
+  /**
+   * Returns the number of points in this series.
+   */
+  public int size() {
+    return n;
+  }
+
+  public double getX(int i) {
+    return xs[i];
+  }
+
+  public double getMid(int i) {
+    return mids[i];
+  }
+
+  public double getLow(int i) {
+    return lows[i];
+  }
+
+  public double getHigh(int i) {
+    return highs[i];
+  }
+
+  /**
+   * Returns true iff some point of this series has a band of nonzero width.
+   */
+  public boolean hasBand() {
+    for (int i = 0; i < n; i++)
+      if (lows[i] != highs[i])
+        return true;
+    return false;
+  }
+
+  /**
+   * Returns a string representation of the central values of this series.
+   */
+  public String toString() {
+    StringBuilder ans = new StringBuilder(label).append(": [");
+    for (int i = 0; i < n; i++)
+      ans.append(i == 0 ? "" : ", ").append(String.format("%.3f", mids[i]));
+    return ans.append("]").toString();
+  }
+}
@@ -0,0 +1,246 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * A Tournament plays every registered suggest strategy (see Strategies) on the same
+ * seeded boards and reports, per strategy and board size, how often it wins within
+ * the step limit, how many moves it needs on average, and how much CPU time it
+ * spends per move.
+ *
+ * The games of one strategy on one size are played in parallel on the fork-join
+ * pool, each on a pooled board. Strategies are asked directly, bypassing the
+ * suggestion cache, so every move is paid for. CPU time is the CPU time the playing
+ * threads spent in suggest. Strategies that fork workers (see
+ * SuggestStrategy.forksWorkers()) are also charged for the CPU time the other
+ * threads of the common pool spent while they played, less that of the playing
+ * threads outside suggest; flooding, JIT compilation and garbage collection are
+ * never charged.
+ */
+
+public class Tournament {
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final List<SuggestStrategy> strategies;
+    private final int games;
+    private final long seed;
+    private final List<Result> results = new ArrayList<>();
+
+    /**
+     * The outcome of one strategy on one board size.
+     */
+    public static final class Result {
+        private final String strategy;
+        private final int size, games, wins;
+        private final long moves, suggested, cpuNanos;
+
+        Result(String strategy, int size, int games, int wins, long moves, long suggested, long cpuNanos)
+        {
+            this.strategy = strategy;
+            this.size = size;
+            this.games = games;
+            this.wins = wins;
+            this.moves = moves;
+            this.suggested = suggested;
+            this.cpuNanos = cpuNanos;
+        }
+
+        public String getStrategy()
+        {
+            return strategy;
+        }
+
+        public int getSize()
+        {
+            return size;
+        }
+
+        /**
+         * Returns the fraction of games flooded within Game.getStepLimit(size).
+         */
+        public double getWinRate()
+        {
+            return (double) wins / games;
+        }
+
+        /**
+         * Returns the mean number of moves per game, lost games included.
+         */
+        public double getMeanMoves()
+        {
+            return (double) moves / games;
+        }
+
+        /**
+         * Returns the mean CPU time per move in milliseconds, over the moves actually
+         * suggested: the moves a hopeless game is counted as running to are not.
+         */
+        public double getCpuMillisPerMove()
+        {
+            return suggested == 0 ? 0 : cpuNanos / 1e6 / suggested;
+        }
+    }
+
+    /**
+     * Constructs a tournament of all registered strategies, playing the given number
+     * of games per strategy and size, on boards whose seeds derive from the given one.
+     */
+    public Tournament(int games, long seed)
+    {
+        this(Strategies.all(), games, seed);
+    }
+
+    /**
+     * Constructs a tournament of the given strategies.
+     */
+    public Tournament(List<SuggestStrategy> strategies, int games, long seed)
+    {
+        this.strategies = new ArrayList<>(strategies);
+        this.games = games;
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the name of the given strategy as shown in the report, with its depth
+     * if it searches.
+     */
+    public static String nameOf(SuggestStrategy strategy)
+    {
+        return strategy.getDepth() > 0 ? strategy.getName() + "-" + strategy.getDepth() : strategy.getName();
+    }
+
+    /**
+     * Plays every strategy on the boards of the given size, adds the results to this
+     * tournament and returns them. Games end when the board is flooded or after
+     * twice the step limit, so that losing strategies still get a move count. A game
+     * whose lower bound says it cannot be flooded by then is counted as having run
+     * to that limit without playing the rest of its moves.
+     */
+    public List<Result> play(int size)
+    {
+        long[] seeds = new long[games];
+        Random gen = new Random(seed ^ size);
+        for (int i = 0; i < games; i++)
+        {
+            seeds[i] = gen.nextLong();
+        }
+        int limit = Game.getStepLimit(size);
+
+        List<Result> ans = new ArrayList<>();
+        for (SuggestStrategy strategy : strategies)
+        {
+            AtomicInteger wins = new AtomicInteger();
+            AtomicLong moves = new AtomicLong();
+            AtomicLong suggested = new AtomicLong();
+            AtomicLong suggestCpu = new AtomicLong();
+            AtomicLong gameCpu = new AtomicLong();
+            Map<Long, Long> startPoolCpu = strategy.forksWorkers() ? poolCpuTimes() : null;
+            IntStream.range(0, games).parallel().forEach(i -> {
+                long gameStart = threads.getCurrentThreadCpuTime();
+                Board board = BoardPool.acquire(size, seeds[i]);
+                int played = 0, asked = 0;
+                while (!board.fullyFlooded() && played < 2 * limit)
+                {
+                    // Only games past the step limit are worth checking; the win rates
+                    // and move counts are the same either way.
+                    if (played >= limit && played + board.getLowerBound() > 2 * limit)
+                    {
+                        played = 2 * limit;
+                        break;
+                    }
+                    long start = threads.getCurrentThreadCpuTime();
+                    WaterColor color = strategy.suggest(board);
+                    suggestCpu.addAndGet(threads.getCurrentThreadCpuTime() - start);
+                    board.flood(color);
+                    played++;
+                    asked++;
+                }
+                if (board.fullyFlooded() && played <= limit)
+                {
+                    wins.incrementAndGet();
+                }
+                moves.addAndGet(played);
+                suggested.addAndGet(asked);
+                gameCpu.addAndGet(threads.getCurrentThreadCpuTime() - gameStart);
+            });
+            long cpu = suggestCpu.get();
+            if (startPoolCpu != null)
+            {
+                // what the pool did besides playing the games is the workers' share
+                cpu += Math.max(0, poolCpuSince(startPoolCpu) - gameCpu.get());
+            }
+            ans.add(new Result(nameOf(strategy), size, games, wins.get(), moves.get(), suggested.get(), cpu));
+        }
+        results.addAll(ans);
+        return ans;
+    }
+
+    /**
+     * Returns the CPU time so far of every thread of the common fork-join pool and
+     * of the calling thread, which joins in parallel streams, by thread id.
+     */
+    private static Map<Long, Long> poolCpuTimes()
+    {
+        Map<Long, Long> ans = new HashMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            boolean inPool = thread instanceof ForkJoinWorkerThread
+                    && ((ForkJoinWorkerThread) thread).getPool() == ForkJoinPool.commonPool();
+            if (inPool || thread == Thread.currentThread())
+            {
+                long cpu = threads.getThreadCpuTime(thread.getId());
+                if (cpu >= 0)
+                {
+                    ans.put(thread.getId(), cpu);
+                }
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * Returns the CPU time the threads of poolCpuTimes() spent since the given times
+     * were taken; threads started since count from 0.
+     */
+    private static long poolCpuSince(Map<Long, Long> start)
+    {
+        long ans = 0;
+        for (Map.Entry<Long, Long> entry : poolCpuTimes().entrySet())
+        {
+            ans += entry.getValue() - start.getOrDefault(entry.getKey(), 0L);
+        }
+        return ans;
+    }
+
+    /**
+     * Returns all results so far.
+     */
+    public List<Result> getResults()
+    {
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Returns the results so far as a table, one row per strategy and size.
+     */
+    public String toString()
+    {
+        StringBuilder ans = new StringBuilder();
+        ans.append(String.format("%-16s %6s %8s %10s %12s%n", "strategy", "size", "win %", "moves", "CPU ms/move"));
+        for (Result result : results)
+        {
+            ans.append(String.format("%-16s %6d %8.1f %10.2f %12.4f%n", result.strategy, result.size,
+                    100 * result.getWinRate(), result.getMeanMoves(), result.getCpuMillisPerMove()));
+        }
+        return ans.toString();
+    }
+}
@@ -33,6 +33,14 @@ public enum WaterColor {
    * Returns a water color, selected at random and with equal probability.
    */
   public static WaterColor pickOne() {
+    return pickOne(gen);
+  }
+
+  /**
+   * Returns a water color, selected with equal probability using the given
+   * random number generator (so that a seeded generator yields repeatable boards).
+   */
+  public static WaterColor pickOne(Random gen) {
     return values()[gen.nextInt(n)];
   }
   